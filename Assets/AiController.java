@@ -0,0 +1,146 @@
+import java.util.Random;
+
+/* AiController class is a computer opponent that works out where the ball is going
+ * Instead of chasing the ball it solves for where the ball will reach its paddle: how many ticks
+ * the ball needs to cover the distance while friction slows it down, and where it will be then
+ * after bouncing off the top and bottom walls (folding the straight line back into the field).
+ * That answer only changes when something changes the ball's path, which Ball counts for us, so
+ * it is worked out once per bounce rather than simulated forward every tick.
+ * Difficulty comes from how long it takes to react to a new path and how far off its aim is.
+ */
+
+public class AiController implements Controller {
+
+	// difficulty levels
+	public static final int EASY = 0, MEDIUM = 1, HARD = 2, PERFECT = 3;
+
+	// In order: ticks before reacting to a new path, most pixels the aim can be off by, for each difficulty
+	private static final int[] reactionTicks = { 24, 14, 6, 0 };
+	private static final double[] aimError = { 60, 40, 25, 0 };
+
+	// how far (in pixels) the target can be from the middle of the paddle before it moves
+	private static final double deadZone = 5;
+
+	// In order: difficulty, random numbers for the aim
+	private int difficulty;
+	private Random random;
+
+	// The cached prediction: which ball and which of its paths it was made for, where to go for it
+	// (y of the middle of the paddle), and the target being followed until the reaction time is up
+	private Ball predictedBall;
+	private int predictedTrajectory;
+	private double predicted, target = World.GAME_HEIGHT / 2.0;
+
+	// In order: ticks so far, tick when the new prediction will be acted on, predictions worked out
+	private long ticks, reactAt, predictions;
+
+	// Constructor, accepts the difficulty (EASY to PERFECT) and a seed for the random numbers
+	public AiController(int difficulty, long seed) {
+		this.difficulty = difficulty;
+		random = new Random(seed);
+	}
+
+	public void update(World world, boolean rightPlayer) {
+		Ball ball = world.getBall();
+		Paddle paddle = world.getPaddle(rightPlayer);
+		ticks++;
+
+		// only work it out again if the ball's path has changed since last time
+		if (ball != predictedBall || ball.getTrajectoryVersion() != predictedTrajectory) {
+			predictedBall = ball;
+			predictedTrajectory = ball.getTrajectoryVersion();
+			predicted = predict(world, ball, paddle, rightPlayer);
+			if (difficulty < PERFECT && ball.getSpeed() != 0)
+				predicted += (random.nextDouble() * 2 - 1) * aimError[difficulty];
+			reactAt = ticks + reactionTicks[difficulty];
+			predictions++;
+		}
+		if (ticks >= reactAt)
+			target = predicted;
+
+		// a ball that stopped on our side won't get reset, so go and hit it
+		// (touching it from either side knocks it back out in front of the paddle)
+		boolean ourSide = rightPlayer == (ball.getCurrentX() + ball.getDiameter() / 2.0 > World.GAME_WIDTH / 2.0);
+		if (ball.getSpeed() == 0 && ourSide && !world.isWaiting()) {
+			boolean ahead = ball.getCurrentX() + ball.getDiameter() / 2.0 > paddle.getLeft();
+			world.release(rightPlayer, ahead ? Paddle.LEFT : Paddle.RIGHT);
+			world.press(rightPlayer, ahead ? Paddle.RIGHT : Paddle.LEFT);
+		} else {
+			world.release(rightPlayer, Paddle.LEFT);
+			world.release(rightPlayer, Paddle.RIGHT);
+		}
+
+		double middle = paddle.getTop() + paddle.getLength() / 2.0;
+		if (target < middle - deadZone) {
+			world.release(rightPlayer, Paddle.DOWN);
+			world.press(rightPlayer, Paddle.UP);
+		} else if (target > middle + deadZone) {
+			world.release(rightPlayer, Paddle.UP);
+			world.press(rightPlayer, Paddle.DOWN);
+		} else {
+			world.release(rightPlayer, Paddle.UP);
+			world.release(rightPlayer, Paddle.DOWN);
+		}
+	}
+
+	// Works out the y the middle of the paddle should be at to meet the ball:
+	// where the ball crosses the paddle's face if it is coming this way, where it will stop if it
+	// won't make it that far, and the middle of the field if it is heading away
+	private static double predict(World world, Ball ball, Paddle paddle, boolean rightPlayer) {
+		double r = ball.getDiameter() / 2.0;
+		double x = ball.getCurrentX() + r, y = ball.getCurrentY() + r;
+		double dx = ball.getDirectionX(), dy = ball.getDirectionY();
+		double speed = ball.getSpeed();
+		if (speed == 0)
+			return y;
+		if (rightPlayer ? dx <= 0 : dx >= 0)
+			return World.GAME_HEIGHT / 2.0;
+
+		// distance along the path until the ball's edge reaches the paddle's face
+		double face = rightPlayer ? paddle.getLeft() - r : paddle.getRight() + r;
+		double distance = Math.max(0, (face - x) / dx);
+		return fold(y + dy * Math.min(distance, reach(speed, world.getFriction())), r);
+	}
+
+	// How far a ball going at speed will get before friction stops it (moving first, then slowing
+	// down each tick, like World.tick()): speed + (speed - f) + (speed - 2f) + ... for as long as
+	// the speed stays above zero
+	private static double reach(double speed, double friction) {
+		if (friction <= 0)
+			return Double.POSITIVE_INFINITY;
+		double ticks = Math.floor(speed / friction) + 1;
+		return ticks * speed - friction * ticks * (ticks - 1) / 2;
+	}
+
+	// Bounces a y worked out along a straight line back into the field, as the top and bottom
+	// walls would: the ball's centre goes back and forth between r and GAME_HEIGHT - r
+	private static double fold(double y, double r) {
+		double span = World.GAME_HEIGHT - 2 * r;
+		if (span <= 0)
+			return World.GAME_HEIGHT / 2.0;
+		double position = (y - r) % (2 * span);
+		if (position < 0)
+			position += 2 * span;
+		return r + (position > span ? 2 * span - position : position);
+	}
+
+	// Setter function, sets the difficulty (EASY to PERFECT)
+	public void setDifficulty(int difficulty) {
+		this.difficulty = difficulty;
+	}
+
+	// Getter function, returns the difficulty
+	public int getDifficulty() {
+		return difficulty;
+	}
+
+	// Getter function, returns how many times the ball's path has been worked out
+	public long getPredictions() {
+		return predictions;
+	}
+
+	// Getter function, returns how many ticks this controller has played
+	public long getTicks() {
+		return ticks;
+	}
+}
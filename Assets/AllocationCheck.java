@@ -0,0 +1,76 @@
+import java.lang.management.ManagementFactory;
+
+/* AllocationCheck class plays whole matches on one World and checks the simulation allocates nothing
+ * Ticks, points, new rounds, randomised rounds and new matches should all reuse what's already there,
+ * so once a few matches have warmed everything up, the bytes this thread has allocated shouldn't move.
+ * Both paddles are TrackingControllers, like Headless; every other match is played randomised.
+ * Runs without a window and exits with 1 if more than a few hundred bytes were allocated.
+ * Usage: java AllocationCheck [matches] [seed]
+ */
+
+public class AllocationCheck {
+
+	// In order: a match that goes on longer than this (ten minutes of game time) is given up on,
+	// how many matches are played first without being counted, most bytes the JVM itself may allocate on
+	// this thread while it plays (compiling and deoptimising now and then costs a few hundred bytes, however
+	// long the run; one object a point would be hundreds of kilobytes)
+	private static final long maxTicks = 60L * 60 * 10;
+	private static final int warmup = 20, slack = 1024;
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+
+		Controller left = new TrackingController(0.7, seed);
+		Controller right = new TrackingController(0.7, seed + 1);
+		World world = new World(seed);
+		long[] counts = new long[2]; // ticks and points, kept in an array so counting them allocates nothing
+
+		// the first matches load and compile everything, which allocates plenty, so they aren't counted
+		// (they're played from the seeds just before the counted ones)
+		for (int i = 0; i < warmup; i++) {
+			world.newGame(seed - warmup + i);
+			play(world, left, right, i % 2 == 1, counts);
+		}
+		counts[0] = 0;
+		counts[1] = 0;
+
+		threads.getThreadAllocatedBytes(id); // the first call can allocate
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int i = 1; i <= matches; i++) {
+			world.newGame(seed + i);
+			play(world, left, right, i % 2 == 1, counts);
+		}
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+		System.out.printf("%d matches, %d ticks, %d points: %d bytes allocated%n", matches, counts[0], counts[1],
+				allocated);
+		if (allocated > slack) {
+			System.out.println("The simulation allocated something");
+			System.exit(1);
+		}
+		System.out.println("Flat");
+	}
+
+	// plays the match in world to the end, counting its ticks and points
+	private static void play(World world, Controller left, Controller right, boolean randomised, long[] counts) {
+		if (randomised != world.isRandomised())
+			world.toggleRandomise();
+		long ticks = 0;
+		while (world.getWon() == 0 && ticks < maxTicks) {
+			if (world.isStuck() || world.isNewRound())
+				world.nextRound();
+			left.update(world, false);
+			right.update(world, true);
+			world.tick();
+			if ((world.getEvents() & World.SCORED) != 0)
+				counts[1]++;
+			ticks++;
+		}
+		counts[0] += ticks;
+	}
+}
@@ -0,0 +1,125 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/* AssetCache class decodes every sound file once and shares it with whoever asks
+ * Decoding a WAV into a Clip is the slowest part of starting up, and every new GamePanel used to do
+ * all of it again. Here each file is decoded once, on a background thread, so the start page can be
+ * on the screen while the game's sounds are still loading. sound() hands out the Sound straight away;
+ * if it isn't ready yet it is silent until it is (see Sound). A file that can't be loaded (missing, or
+ * no sound card) just stays silent.
+ * Sound effects for the SoundMixer are decoded on the same thread, the mixer keeps those itself: effect()
+ * hands out the id straight away in the same way.
+ */
+
+public class AssetCache {
+
+	// In order: music clips, in the order they'll be needed, then the SoundMixer's effects
+	private static final String[] clips = { "StartBackground.wav", "GameBackground.wav", "SomeoneWon.wav",
+			"RandomMusic.wav" };
+	private static final String[] effects = { "PuckHitPaddle.wav", "PuckHitWall.wav", "Scored.wav" };
+
+	// In order: every Sound handed out so far by file, every effect asked to be decoded so far
+	private static final Map<String, Sound> sounds = new HashMap<>();
+	private static final Set<String> effectFiles = new HashSet<>();
+
+	// In order: files waiting to be decoded (effects are marked by effectPrefix), the thread decoding them,
+	// whether preload() has been called
+	private static final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+	private static final String effectPrefix = "effect:";
+	private static Thread loader;
+	private static boolean preloaded;
+
+	// In order: files decoded, total time spent decoding them (nanoseconds)
+	private static long loadedFiles, loadNanos;
+
+	private AssetCache() {
+	}
+
+	// Starts decoding every sound the game uses in the background (does nothing the second time)
+	public static synchronized void preload() {
+		if (preloaded)
+			return;
+		preloaded = true;
+		for (String file : clips)
+			sound(file);
+		for (String file : effects)
+			decodeEffect(file);
+	}
+
+	// Returns the Sound for a file, asking for it to be decoded the first time
+	public static synchronized Sound sound(String file) {
+		Sound sound = sounds.get(file);
+		if (sound == null) {
+			sound = new Sound();
+			sounds.put(file, sound);
+			queue.add(file);
+			startLoader();
+		}
+		return sound;
+	}
+
+	// Returns the SoundMixer id for a sound effect, asking for it to be decoded the first time
+	// (never decodes on the calling thread: the effect is silent until the background thread has)
+	public static synchronized int effect(String file) {
+		int id = SoundMixer.get().sound(file);
+		decodeEffect(file);
+		return id;
+	}
+
+	// asks for an effect to be decoded, the first time
+	private static void decodeEffect(String file) {
+		if (effectFiles.add(file)) {
+			queue.add(effectPrefix + file);
+			startLoader();
+		}
+	}
+
+	// starts the background thread, the first time anything is asked for
+	private static void startLoader() {
+		if (loader != null)
+			return;
+		loader = new Thread(AssetCache::load, "Asset loader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	// the background thread: decodes whatever has been asked for, one file at a time
+	private static void load() {
+		while (true) {
+			String file;
+			try {
+				file = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				if (file.startsWith(effectPrefix)) {
+					SoundMixer mixer = SoundMixer.get();
+					if (!mixer.isLoaded(mixer.load(file.substring(effectPrefix.length()))))
+						continue; // it has said why
+				} else {
+					Sound sound;
+					synchronized (AssetCache.class) {
+						sound = sounds.get(file);
+					}
+					sound.open(file);
+				}
+				synchronized (AssetCache.class) {
+					loadedFiles++;
+					loadNanos += System.nanoTime() - start;
+				}
+			} catch (Exception e) {
+				System.out.println("Couldn't load " + file + ", it will be silent: " + e.getMessage());
+			}
+		}
+	}
+
+	// Summary of how much was decoded and how long it took
+	public static synchronized String report() {
+		return String.format("Assets: %d files decoded in %.0f ms (in the background)", loadedFiles, loadNanos / 1e6);
+	}
+}
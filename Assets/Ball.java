@@ -1,84 +1,103 @@
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.nio.ByteBuffer;
 
 /* Ball class represents the balls being bounced around by the paddles
  * 
  * Child of Rectangle because no circles smh
  * 
  * Trajectory is defined by a vector, position by two doubles.
+ * The vector is kept as its components: which way the ball is going (a unit vector, x to the right
+ * and y down the screen) and how fast. Moving is two multiply-adds, bouncing off a wall flips the sign of
+ * one component, and friction only shortens it - no sin or cos every tick. The direction is kept even
+ * when the speed is zero, so a stopped ball still bounces the right way when a paddle pushes it.
+ * The angle is only worked out when someone asks for it. Set -Dpong.strictMath=true to do those
+ * (and setAngle()) with StrictMath, which gives the same bits on every JVM instead of the fastest answer.
  */
 
 @SuppressWarnings("serial")
 public class Ball extends Rectangle {
 
-	// In order: angle of movement from the x-axis in radians, speed of Ball,
+	// whether angles are converted with StrictMath (the same on every JVM) rather than Math
+	private static final boolean strictMath = Boolean.getBoolean("pong.strictMath");
+
+	// In order: direction of movement (x and y of a unit vector), speed of Ball,
 	// current x position, current y position
 	// In order: initial diameter of any Ball object
 	// In order: initial speed of any Ball object
 	// in order: current diameter of specific Ball object, current mass of specific
 	// Ball object (3 * diameter)
-	private double angle, speed, currentX, currentY;
+	private double directionX = 1, directionY, speed, currentX, currentY;
 	private static final int initialDiameter = 20;
 	private static final double initialSpeed = 5;
 	private int diameter, mass;
-	private static boolean randomised;
+	private boolean randomised;
+
+	// picks the colour of each frame in random mode, the same sequence every time, and the one picked
+	private static final Color[] flashColours = { Color.red, Color.orange, Color.yellow, Color.green, Color.blue,
+			Color.darkGray, Color.magenta };
+	private int flash;
+	private Color colour = flashColours[0];
+
+	// goes up whenever the ball's path changes other than by moving along it or slowing down,
+	// so anyone predicting where it goes knows when to work it out again
+	private int trajectory;
 
 	// Constructor, accepts initial position of the Ball object and initializes the
 	// private variables
 	public Ball(int x, int y) {
 		super(x, y, initialDiameter, initialDiameter);
+		reset(x, y);
+	}
+
+	// Puts the Ball back the way the constructor leaves it, at a new position
+	// (a new round or game reuses the same Ball rather than making another)
+	public void reset(int x, int y) {
+		trajectory++;
+		directionX = 1;
+		directionY = 0;
+		speed = initialSpeed;
 		diameter = initialDiameter;
+		mass = diameter * 3;
+		randomised = false;
 		currentX = x;
 		currentY = y;
-		speed = initialSpeed;
-		mass = diameter * 3;
+		setBounds(x, y, diameter, diameter);
 	}
 
 	// Move function, updates each position of the Ball according to its current
 	// trajectory
 	public void move() {
-		currentX += Math.cos(angle) * speed;
-		currentY += -Math.sin(angle) * speed;
+		currentX += directionX * speed;
+		currentY += directionY * speed;
 		x = (int) Math.round(currentX);
 		y = (int) Math.round(currentY);
 	}
 
+	// Moves the Ball by exactly (dx, dy), for when a tick's movement is split up by collisions
+	public void moveBy(double dx, double dy) {
+		currentX += dx;
+		currentY += dy;
+		x = (int) Math.round(currentX);
+		y = (int) Math.round(currentY);
+	}
+
+	// Picks the colour for the next frame in random mode (once a frame, however many times it's drawn)
+	public void flash() {
+		flash = flash * 1103515245 + 12345;
+		colour = flashColours[(flash >>> 16) % flashColours.length];
+	}
+
 	// Draw function, updates the graphics of the Ball
 	public void draw(Graphics graphic) {
-		if (!randomised)
-			graphic.setColor(Color.white);
-		else {
-			int flag = (int) (Math.random() * 7);
-			switch (flag) {
-			case 0:
-				graphic.setColor(Color.red);
-				break;
-			case 1:
-				graphic.setColor(Color.orange);
-				break;
-			case 2:
-				graphic.setColor(Color.yellow);
-				break;
-			case 3:
-				graphic.setColor(Color.green);
-				break;
-			case 4:
-				graphic.setColor(Color.blue);
-				break;
-			case 5:
-				graphic.setColor(Color.darkGray);
-				break;
-			case 6:
-				graphic.setColor(Color.magenta);
-				break;
-			}
-		}
+		graphic.setColor(randomised ? colour : Color.white);
 		graphic.fillOval(x, y, diameter, diameter);
 	}
 
 	// Setter function, sets the diameter to a new specified value
 	public void setDiameter(int diameter) {
+		trajectory++;
 		this.diameter = diameter;
 		this.mass = diameter * 3;
 		this.width = diameter;
@@ -87,6 +106,7 @@ public class Ball extends Rectangle {
 
 	// Setter function, sets the mass to a new specified value
 	public void setMass(int mass) {
+		trajectory++;
 		this.mass = mass;
 		this.diameter = mass / 3;
 		this.width = diameter;
@@ -95,41 +115,148 @@ public class Ball extends Rectangle {
 
 	// Setter function, sets the angle and speed of the new trajectory
 	public void setTrajectory(double angle, double speed) {
-		this.angle = angle;
+		trajectory++;
+		setAngle(angle);
 		this.speed = speed;
 	}
 
 	// Setter function, sets if the game is random mode or not
 	public void isRandom(boolean randomised) {
-		Ball.randomised = randomised;
+		this.randomised = randomised;
 	}
 
-	// Setter function, sets a new angle as specified
+	// Getter function, returns whether the game is in random mode (the ball flashes colours)
+	public boolean isRandom() {
+		return randomised;
+	}
+
+	// Setter function, sets a new angle as specified (radians anticlockwise from the x-axis)
 	public void setAngle(double angle) {
-		this.angle = angle;
+		setDirection(strictMath ? StrictMath.cos(angle) : Math.cos(angle),
+				-(strictMath ? StrictMath.sin(angle) : Math.sin(angle)));
+	}
+
+	// Setter function, sets the direction of movement to (x, y) (y down the screen), which needn't be of length one
+	public void setDirection(double x, double y) {
+		double length = Math.sqrt(x * x + y * y);
+		if (length == 0)
+			return; // no direction at all, keep the one we had
+		x /= length;
+		y /= length;
+		if (x != directionX || y != directionY)
+			trajectory++;
+		directionX = x;
+		directionY = y;
+	}
+
+	// Bounces the ball off something upright (a paddle's face): the horizontal direction turns around
+	public void reflectX() {
+		trajectory++;
+		directionX = -directionX;
+	}
+
+	// Bounces the ball off something flat (the top or bottom wall): the vertical direction turns around
+	public void reflectY() {
+		trajectory++;
+		directionY = -directionY;
 	}
 
 	// Setter function, sets a new speed as specified
 	public void setSpeed(double speed) {
+		if (speed != this.speed)
+			trajectory++;
 		this.speed = speed;
 	}
 
+	// Takes friction off the speed; unlike setSpeed() this doesn't count as a new trajectory,
+	// since slowing down steadily is part of the path anyone predicting it already expects
+	public void slowDown(double friction) {
+		speed -= friction;
+	}
+
 	// Setter function, sets a new location as specified
 	public void setLocation(int x, int y) {
+		trajectory++;
 		this.currentX = x;
 		this.currentY = y;
 		this.x = x;
 		this.y = y;
 	}
 
-	// Getter function, returns a double[2] of form (currentX, currentY)
-	public double[] getCoordinates() {
-		return new double[] { currentX, currentY };
+	// Writes the state of the Ball (everything but how it is drawn) for read() to put back
+	public void write(ByteBuffer out) {
+		out.putDouble(currentX);
+		out.putDouble(currentY);
+		out.putDouble(directionX);
+		out.putDouble(directionY);
+		out.putDouble(speed);
+		out.putInt(diameter);
+		out.putInt(mass);
+		out.put((byte) (randomised ? 1 : 0));
+	}
+
+	// Puts back a state written by write(), which counts as a new trajectory
+	public void read(ByteBuffer in) {
+		trajectory++;
+		currentX = in.getDouble();
+		currentY = in.getDouble();
+		directionX = in.getDouble();
+		directionY = in.getDouble();
+		speed = in.getDouble();
+		diameter = in.getInt();
+		mass = in.getInt();
+		randomised = in.get() != 0;
+		x = (int) Math.round(currentX);
+		y = (int) Math.round(currentY);
+		width = diameter;
+		height = diameter;
+	}
+
+	// Getter function, returns the exact x position
+	public double getCurrentX() {
+		return currentX;
+	}
+
+	// Getter function, returns the exact y position
+	public double getCurrentY() {
+		return currentY;
+	}
+
+	// Getter function, returns the angle of movement in radians (0 to 2pi, anticlockwise from the x-axis),
+	// worked out from the direction
+	public double getAngle() {
+		double angle = strictMath ? StrictMath.atan2(-directionY, directionX) : Math.atan2(-directionY, directionX);
+		return angle < 0 ? angle + 2 * Math.PI : angle;
+	}
+
+	// Getter function, returns the x of the direction of movement (a unit vector)
+	public double getDirectionX() {
+		return directionX;
+	}
+
+	// Getter function, returns the y of the direction of movement (a unit vector, y down the screen)
+	public double getDirectionY() {
+		return directionY;
+	}
+
+	// Getter function, returns how far the ball moves right each tick
+	public double getVelocityX() {
+		return directionX * speed;
+	}
+
+	// Getter function, returns how far the ball moves down each tick
+	public double getVelocityY() {
+		return directionY * speed;
+	}
+
+	// Getter function, returns the speed
+	public double getSpeed() {
+		return speed;
 	}
 
-	// Getter function, returns a double[2] of form (angle, speed);
-	public double[] getTrajectory() {
-		return new double[] { angle, speed };
+	// Getter function, returns a number that changes whenever the path of the ball does
+	public int getTrajectoryVersion() {
+		return trajectory;
 	}
 
 	// Getter function, returns an int - the diameter of the current Ball
@@ -0,0 +1,255 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/* BallField class holds lots of balls at once, for chaos mode
+ * Ball keeps each ball in its own object (a Rectangle, no less), which is fine for one ball but
+ * hopeless for ten thousand. Here every property is one primitive array indexed by ball number,
+ * so a tick is a few straight loops over arrays with nothing allocated.
+ * Balls bounce off the walls, the paddles and each other. To find which balls touch without
+ * testing every pair, the field is split into a grid of cells as big as the biggest ball and the
+ * balls are sorted into cells each tick (a spatial hash) - a ball can only touch balls in its own
+ * cell or the cells right next to it.
+ * Positions here are the centres of the balls, not the top left corners like Ball.
+ */
+
+public class BallField {
+
+	// In order: centre positions, velocities (pixels per tick), diameters, masses (3 * diameter, as in Ball)
+	private final double[] x, y, vx, vy, diameter, mass;
+
+	// In order: number of balls, most balls there is room for
+	private int count;
+	private final int capacity;
+
+	// In order: size of the field, size of a grid cell (the largest diameter allowed)
+	private final double width, height, cellSize;
+
+	// The grid: number of columns and rows, where each cell's balls start in cellBalls
+	// (cell c has cellBalls[cellStart[c]] up to cellBalls[cellStart[c + 1]]), and each ball's cell
+	private final int columns, rows;
+	private final int[] cellStart, cellBalls, cell;
+
+	// Constructor, accepts the most balls there will ever be, the size of the field and the largest diameter
+	public BallField(int capacity, double width, double height, double maxDiameter) {
+		this.capacity = capacity;
+		this.width = width;
+		this.height = height;
+		x = new double[capacity];
+		y = new double[capacity];
+		vx = new double[capacity];
+		vy = new double[capacity];
+		diameter = new double[capacity];
+		mass = new double[capacity];
+
+		cellSize = maxDiameter;
+		columns = Math.max(1, (int) Math.ceil(width / cellSize));
+		rows = Math.max(1, (int) Math.ceil(height / cellSize));
+		cellStart = new int[columns * rows + 1];
+		cellBalls = new int[capacity];
+		cell = new int[capacity];
+	}
+
+	// Adds a ball with its centre at (x, y), returns false if the field is full
+	public boolean add(double x, double y, double vx, double vy, double diameter) {
+		if (count == capacity || diameter > cellSize)
+			return false;
+		this.x[count] = x;
+		this.y[count] = y;
+		this.vx[count] = vx;
+		this.vy[count] = vy;
+		this.diameter[count] = diameter;
+		mass[count] = diameter * 3;
+		count++;
+		return true;
+	}
+
+	// removes every ball
+	public void clear() {
+		count = 0;
+	}
+
+	// runs one tick: move every ball, then bounce them off the paddles, the walls and each other
+	public void tick(Paddle left, Paddle right) {
+		move();
+		bounceOffPaddle(left);
+		bounceOffPaddle(right);
+		bounceOffWalls();
+		sortIntoCells();
+		bounceOffEachOther();
+	}
+
+	// moves every ball along its velocity
+	private void move() {
+		for (int i = 0; i < count; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+		}
+	}
+
+	// keeps every ball inside the field, turning it around at whichever wall it reached
+	private void bounceOffWalls() {
+		for (int i = 0; i < count; i++) {
+			double r = diameter[i] / 2;
+			if (x[i] < r) {
+				x[i] = r;
+				vx[i] = Math.abs(vx[i]);
+			} else if (x[i] > width - r) {
+				x[i] = width - r;
+				vx[i] = -Math.abs(vx[i]);
+			}
+			if (y[i] < r) {
+				y[i] = r;
+				vy[i] = Math.abs(vy[i]);
+			} else if (y[i] > height - r) {
+				y[i] = height - r;
+				vy[i] = -Math.abs(vy[i]);
+			}
+		}
+	}
+
+	// sends every ball overlapping the paddle back the way it came, out of the side it is closest to
+	private void bounceOffPaddle(Paddle paddle) {
+		double left = paddle.getLeft(), right = paddle.getRight(), top = paddle.getTop(), bottom = paddle.getBottom();
+		double middle = (left + right) / 2;
+		for (int i = 0; i < count; i++) {
+			double r = diameter[i] / 2;
+			double nearestX = Math.max(left, Math.min(x[i], right)), nearestY = Math.max(top, Math.min(y[i], bottom));
+			double distanceX = x[i] - nearestX, distanceY = y[i] - nearestY;
+			if (distanceX * distanceX + distanceY * distanceY >= r * r)
+				continue;
+			if (x[i] < middle) {
+				x[i] = left - r;
+				vx[i] = -Math.abs(vx[i]);
+			} else {
+				x[i] = right + r;
+				vx[i] = Math.abs(vx[i]);
+			}
+		}
+	}
+
+	// works out every ball's cell, then counting sorts the balls by cell into cellBalls
+	private void sortIntoCells() {
+		Arrays.fill(cellStart, 0);
+		for (int i = 0; i < count; i++) {
+			int column = Math.min(columns - 1, Math.max(0, (int) (x[i] / cellSize)));
+			int row = Math.min(rows - 1, Math.max(0, (int) (y[i] / cellSize)));
+			cell[i] = row * columns + column;
+			cellStart[cell[i] + 1]++;
+		}
+		for (int c = 0; c < columns * rows; c++)
+			cellStart[c + 1] += cellStart[c];
+		// cellStart[c] is now where cell c starts; fill each cell from the back using the next cell's start
+		for (int i = count - 1; i >= 0; i--)
+			cellBalls[--cellStart[cell[i] + 1]] = i;
+		// that moved every start back by one cell, so shift them forward again
+		System.arraycopy(cellStart, 1, cellStart, 0, columns * rows);
+		cellStart[columns * rows] = count;
+	}
+
+	// tests every ball against the balls in its own cell and the cells after it,
+	// so each nearby pair is tested exactly once
+	private void bounceOffEachOther() {
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int c = row * columns + column;
+				for (int a = cellStart[c]; a < cellStart[c + 1]; a++) {
+					int i = cellBalls[a];
+					for (int b = a + 1; b < cellStart[c + 1]; b++)
+						collide(i, cellBalls[b]);
+					if (column + 1 < columns)
+						collideWithCell(i, c + 1);
+					if (row + 1 < rows) {
+						if (column > 0)
+							collideWithCell(i, c + columns - 1);
+						collideWithCell(i, c + columns);
+						if (column + 1 < columns)
+							collideWithCell(i, c + columns + 1);
+					}
+				}
+			}
+		}
+	}
+
+	// tests ball i against every ball in cell c
+	private void collideWithCell(int i, int c) {
+		for (int b = cellStart[c]; b < cellStart[c + 1]; b++)
+			collide(i, cellBalls[b]);
+	}
+
+	// if balls i and j overlap, pushes them apart and bounces them off each other
+	// (an elastic collision along the line between their centres, like two snooker balls)
+	private void collide(int i, int j) {
+		double dx = x[j] - x[i], dy = y[j] - y[i];
+		double reach = (diameter[i] + diameter[j]) / 2;
+		double distanceSquared = dx * dx + dy * dy;
+		if (distanceSquared >= reach * reach || distanceSquared == 0)
+			return;
+		double distance = Math.sqrt(distanceSquared);
+		double nx = dx / distance, ny = dy / distance;
+		double total = mass[i] + mass[j];
+
+		// move them apart, the lighter one further
+		double overlap = reach - distance;
+		x[i] -= nx * overlap * mass[j] / total;
+		y[i] -= ny * overlap * mass[j] / total;
+		x[j] += nx * overlap * mass[i] / total;
+		y[j] += ny * overlap * mass[i] / total;
+
+		// only bounce if they are moving towards each other
+		double closing = (vx[i] - vx[j]) * nx + (vy[i] - vy[j]) * ny;
+		if (closing <= 0)
+			return;
+		double impulse = 2 * closing / total;
+		vx[i] -= impulse * mass[j] * nx;
+		vy[i] -= impulse * mass[j] * ny;
+		vx[j] += impulse * mass[i] * nx;
+		vy[j] += impulse * mass[i] * ny;
+	}
+
+	// Writes every ball for read() to put back (the grid is worked out again every tick anyway)
+	public void write(ByteBuffer out) {
+		out.putInt(count);
+		for (int i = 0; i < count; i++) {
+			out.putDouble(x[i]);
+			out.putDouble(y[i]);
+			out.putDouble(vx[i]);
+			out.putDouble(vy[i]);
+			out.putDouble(diameter[i]);
+		}
+	}
+
+	// Replaces every ball with the ones written by write()
+	public void read(ByteBuffer in) {
+		count = 0;
+		for (int i = in.getInt(); i > 0; i--)
+			add(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	// Getter function, returns the number of balls
+	public int getCount() {
+		return count;
+	}
+
+	// Getter function, returns the x position of the centre of ball i
+	public double getX(int i) {
+		return x[i];
+	}
+
+	// Getter function, returns the y position of the centre of ball i
+	public double getY(int i) {
+		return y[i];
+	}
+
+	// Getter function, returns the diameter of ball i
+	public double getDiameter(int i) {
+		return diameter[i];
+	}
+
+	// Getter function, returns the total kinetic energy, which bouncing shouldn't change
+	public double getEnergy() {
+		double energy = 0;
+		for (int i = 0; i < count; i++)
+			energy += mass[i] * (vx[i] * vx[i] + vy[i] * vy[i]) / 2;
+		return energy;
+	}
+}
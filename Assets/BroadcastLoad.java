@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/* BroadcastLoad class points thousands of spectators at a BroadcastServer on this computer
+ * Two computer players play on a 60 Hz game thread that publishes every tick, like GamePanel does.
+ * All the spectators are read by one selector on the main thread; the first few decode the world
+ * and the rest only count frames. Some can be slow on purpose (they only take in half as many bytes
+ * a second as the match sends) to show they skip frames rather than hold anyone else up. At the end
+ * every decoding spectator should have exactly the world the game has.
+ * Reports what each tick cost the game thread and the server, and how long frames took to arrive.
+ * Usage: java BroadcastLoad [spectators] [seconds] [decoding] [slow]
+ */
+
+public class BroadcastLoad {
+
+	// In order: how often the slow spectators read (ns), longest to wait for everyone to catch up at the end (ms)
+	// In order: size of the slow spectators' receive buffers, most bytes they take in each time they read
+	private static final long slowReads = 100000000L, catchUp = 5000;
+	private static final int slowBuffer = 2048, slowBytes = 200;
+
+	// set by the main thread to end the game
+	private static volatile boolean playing = true;
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int decoding = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int slow = args.length > 3 ? Integer.parseInt(args[3]) : count / 10;
+
+		final BroadcastServer server = new BroadcastServer(0);
+		server.start();
+		final World game = new World(1);
+		final Histogram publishCost = new Histogram();
+		final long[] lastTick = new long[1];
+		Thread gameThread = new Thread(new Runnable() {
+			public void run() {
+				Controller left = new TrackingController(0.7, 1), right = new TrackingController(0.7, 2);
+				FrameScheduler scheduler = new FrameScheduler();
+				scheduler.start();
+				long tick = 0;
+				while (playing) {
+					for (int ticks = scheduler.awaitTicks(); ticks > 0; ticks--) {
+						if (game.getWon() != 0)
+							game.newGame(game.getSeed() + 1);
+						else if (game.isWaiting())
+							game.nextRound();
+						left.update(game, false);
+						right.update(game, true);
+						game.tick();
+						long start = System.nanoTime();
+						server.publish(game, ++tick);
+						publishCost.record(System.nanoTime() - start);
+					}
+				}
+				lastTick[0] = tick;
+			}
+		}, "Game loop");
+
+		// everyone connects before the game starts, so the counts below are for the whole run
+		Selector selector = Selector.open();
+		ArrayList<Spectator> spectators = new ArrayList<Spectator>();
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+		for (int i = 0; i < count; i++) {
+			SocketChannel channel = SocketChannel.open();
+			if (i >= count - slow)
+				channel.socket().setReceiveBufferSize(slowBuffer); // so they really do fall behind
+			channel.connect(address);
+			channel.configureBlocking(false);
+			Spectator spectator = new Spectator(channel, i < decoding ? new World(0) : null);
+			spectators.add(spectator);
+			if (i >= count - slow)
+				continue; // read on a timer instead
+			channel.register(selector, SelectionKey.OP_READ, spectator);
+		}
+		System.out.printf("%d spectators connected (%d decoding, %d slow), watching for %d s%n", count, decoding, slow,
+				seconds);
+
+		gameThread.start();
+		long end = System.nanoTime() + seconds * 1000000000L, nextSlowRead = 0;
+		int hungUp = 0;
+		while (System.nanoTime() < end) {
+			hungUp += readReady(selector);
+			if (System.nanoTime() >= nextSlowRead) {
+				for (int i = count - slow; i < count; i++)
+					if (!spectators.get(i).read(slowBytes))
+						hungUp++;
+				nextSlowRead = System.nanoTime() + slowReads;
+			}
+		}
+		playing = false;
+		gameThread.join();
+
+		// give everyone the chance to get the last frame
+		long giveUp = System.currentTimeMillis() + catchUp;
+		boolean caughtUp = false;
+		while (!caughtUp && System.currentTimeMillis() < giveUp) {
+			hungUp += readReady(selector);
+			for (int i = count - slow; i < count; i++)
+				spectators.get(i).read();
+			caughtUp = true;
+			for (Spectator spectator : spectators)
+				if (spectator.getTick() != lastTick[0])
+					caughtUp = false;
+		}
+		server.stop();
+
+		Histogram lag = new Histogram(), slowLag = new Histogram();
+		long frames = 0, slowFrames = 0, keyframes = 0;
+		int matching = 0;
+		for (int i = 0; i < count; i++) {
+			Spectator spectator = spectators.get(i);
+			if (i >= count - slow) {
+				slowLag.add(spectator.getLag());
+				slowFrames += spectator.getFrames();
+			} else {
+				lag.add(spectator.getLag());
+				frames += spectator.getFrames();
+			}
+			keyframes += spectator.getKeyframes();
+			if (spectator.getWorld() != null && spectator.getWorld().hash() == game.hash())
+				matching++;
+		}
+
+		System.out.println(server.report());
+		System.out.printf("Game thread: %d ticks, publish cost avg %.2f us, p50 %.2f us, p99 %.2f us, max %.2f us%n",
+				lastTick[0], publishCost.getMean() / 1e3, publishCost.percentile(0.5) / 1e3,
+				publishCost.percentile(0.99) / 1e3, publishCost.getMax() / 1e3);
+		System.out.printf("Spectators: %.1f frames each (%.1f for the slow ones), %d keyframes in all, %d hung up on%n",
+				(double) frames / Math.max(1, count - slow), (double) slowFrames / Math.max(1, slow), keyframes, hungUp);
+		System.out.printf("Lag from publish to read: avg %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms (slow ones: p50 %.1f ms)%n",
+				lag.getMean() / 1e6, lag.percentile(0.5) / 1e6, lag.percentile(0.99) / 1e6, lag.getMax() / 1e6,
+				slowLag.percentile(0.5) / 1e6);
+		System.out.printf("%d of %d decoding spectators ended up with exactly the game's world, everyone %s%n", matching,
+				Math.min(decoding, count), caughtUp ? "got the last frame" : "DIDN'T get the last frame");
+		for (Spectator spectator : spectators)
+			spectator.close();
+		if (matching != Math.min(decoding, count) || !caughtUp)
+			System.exit(1);
+	}
+
+	// reads every spectator with something waiting, returns how many found the server had hung up
+	private static int readReady(Selector selector) throws IOException {
+		int hungUp = 0;
+		selector.select(10);
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			if (!((Spectator) key.attachment()).read()) {
+				key.cancel();
+				hungUp++;
+			}
+		}
+		return hungUp;
+	}
+}
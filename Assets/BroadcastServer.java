@@ -0,0 +1,372 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* BroadcastServer class sends a match to anyone who wants to watch it (see Spectator), over TCP
+ * The game thread hands over the state of the world after every tick (publish()), which costs it
+ * one encode and a swap - it never touches a socket. The server thread turns each state into one
+ * frame, once, and offers that same buffer to every spectator, all through a single selector.
+ *
+ * Every keyframeTicks ticks the frame is a keyframe (the whole state); the frames in between are
+ * deltas against that keyframe (see WorldCodec.delta()), so each one stands on its own once you have
+ * the keyframe. That is what keeps slow spectators from holding anyone up: a spectator that is still
+ * busy with an older frame just skips the frames that come in meanwhile and gets the newest one
+ * when it's ready, and if it missed a keyframe it gets that first. Someone who can't take a single
+ * frame in maxStall is cut off. Nothing is queued up per spectator, however far behind it is.
+ *
+ * Frame layout: the length of the rest, the kind (KEYFRAME or DELTA), the tick, and System.nanoTime()
+ * when the state was published (only meaningful on the same computer, for measuring lag), then the
+ * state or the delta.
+ */
+
+public class BroadcastServer implements Runnable {
+
+	// In order: kinds of frame, size of a frame's header
+	public static final byte KEYFRAME = 1, DELTA = 2;
+	public static final int FRAME_HEADER = 4 + 1 + 8 + 8;
+
+	// In order: ticks between keyframes, how much each spectator's socket holds before they count as busy
+	// (kept small, so a slow spectator skips to newer frames instead of the operating system queueing up old
+	// ones for them), longest a spectator may take over one frame before it's cut off (ns)
+	private static final int keyframeTicks = 60, sendBuffer = 4 * 1024;
+	private static final long maxStall = 5000000000L;
+
+	// set in the middle index when the game thread has published a state the server hasn't taken yet
+	private static final int fresh = 4;
+
+	// The states handed over by the game thread, triple buffered like StateBuffer: the game thread fills
+	// the back one, the server takes the middle one whenever there's a new one; with the tick and time of each
+	private final ByteBuffer[] states = new ByteBuffer[3];
+	private final long[] stateTicks = new long[3], stateTimes = new long[3];
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0, front = 2;
+
+	// In order: the listening socket, the selector everything goes through, the server thread,
+	// whether stop() has been called (which closes the socket and the selector for good)
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private Thread thread;
+	private volatile boolean running;
+	private boolean stopped;
+
+	// Everything below belongs to the server thread
+	// everyone watching
+	private final ArrayList<Client> clients = new ArrayList<Client>();
+	// In order: the newest frame, the keyframe it is based on
+	private Frame latest, keyframe;
+	// the state in that keyframe
+	private final ByteBuffer keyframeState = ByteBuffer.allocate(WorldCodec.MAX_STATE);
+	// frames no longer used by anyone, ready to be filled again
+	private final ArrayDeque<Frame> spare = new ArrayDeque<Frame>();
+	// a buffer for reading what spectators send
+	private final ByteBuffer ignored = ByteBuffer.allocate(256);
+
+	// Statistics: nanoseconds spent offering each frame to every spectator, frames and keyframes made,
+	// frames a spectator skipped because it was still busy, bytes sent, spectators cut off for being too slow
+	private final Histogram sendCost = new Histogram();
+	private long frames, keyframes, skipped, bytesSent, stalled;
+
+	// a frame, shared by every spectator it is being sent to
+	private static final class Frame {
+		final ByteBuffer bytes = ByteBuffer.allocateDirect(FRAME_HEADER + 5 + WorldCodec.MAX_STATE * 2);
+		long tick, keyframe; // the tick it is for, and the tick of the keyframe (its own, for a keyframe)
+		boolean isKeyframe;
+		int users; // spectators part of the way through sending it, plus one for each of latest and keyframe
+	}
+
+	// someone watching, and how far they are through the frame being sent to them
+	private static final class Client {
+		SocketChannel channel;
+		SelectionKey key;
+		Frame sending; // null when nothing is
+		int offset;
+		long sentTick = -1, keyframe = -1; // the last frame they got (or started getting), the keyframe they have
+		long started; // when the frame being sent started
+	}
+
+	// Constructor, accepts the port to listen on (0 for any free one, see getPort())
+	public BroadcastServer(int port) throws IOException {
+		for (int i = 0; i < 3; i++)
+			states[i] = ByteBuffer.allocate(WorldCodec.MAX_STATE);
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	// Starts the server thread (a daemon, so it never keeps the program open); does nothing once stopped
+	public synchronized void start() {
+		if (thread != null || stopped)
+			return;
+		running = true;
+		thread = new Thread(this, "Spectator server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// Stops the server thread, waits for it, and disconnects everyone (a new server is needed to carry on)
+	public void stop() throws InterruptedException {
+		Thread stopping;
+		synchronized (this) {
+			stopping = thread;
+			thread = null;
+			running = false;
+			stopped = true;
+		}
+		if (stopping == null)
+			return;
+		selector.wakeup();
+		stopping.join();
+	}
+
+	// Game thread: hands over the state of world after the given tick, to go out to everyone watching
+	public void publish(World world, long tick) {
+		WorldCodec.encode(world, 0, 0, states[back]);
+		stateTicks[back] = tick;
+		stateTimes[back] = System.nanoTime();
+		int old = middle.getAndSet(back | fresh);
+		back = old & 3;
+		if ((old & fresh) == 0)
+			selector.wakeup(); // otherwise the server hasn't got round to the last one yet, and is already awake for it
+	}
+
+	// the server thread: takes new states, lets people in, and keeps everyone's frames going
+	public void run() {
+		try {
+			while (running) {
+				selector.select(1000);
+				long now = System.nanoTime();
+				if ((middle.get() & fresh) != 0) {
+					front = middle.getAndSet(front) & 3;
+					newFrame(states[front], stateTicks[front], stateTimes[front]);
+					for (int i = 0; i < clients.size(); i++)
+						offer(clients.get(i), now);
+					sendCost.record(System.nanoTime() - now);
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable())
+						accept();
+					else {
+						Client client = (Client) key.attachment();
+						if (key.isReadable() && !readFrom(client))
+							continue;
+						if (key.isValid() && key.isWritable())
+							send(client, now);
+					}
+				}
+
+				// cut off anyone stuck on one frame for too long
+				for (int i = clients.size() - 1; i >= 0; i--) {
+					Client client = clients.get(i);
+					if (client.sending != null && now - client.started > maxStall) {
+						stalled++;
+						close(client);
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Spectator server stopped: " + e.getMessage());
+		} finally {
+			for (int i = clients.size() - 1; i >= 0; i--)
+				close(clients.get(i));
+			try {
+				server.close();
+				selector.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+
+	// makes the frame for a new state: a keyframe every keyframeTicks ticks, otherwise a delta against the last one
+	private void newFrame(ByteBuffer state, long tick, long time) {
+		Frame frame = spare.isEmpty() ? new Frame() : spare.poll();
+		ByteBuffer bytes = frame.bytes;
+		bytes.clear();
+		bytes.position(FRAME_HEADER);
+		frame.tick = tick;
+		frame.isKeyframe = keyframe == null || tick - keyframe.tick >= keyframeTicks || tick < keyframe.tick;
+		if (frame.isKeyframe) {
+			bytes.put(state);
+			state.rewind();
+			keyframeState.clear();
+			keyframeState.put(state);
+			keyframeState.flip();
+			frame.keyframe = tick;
+			keyframes++;
+		} else {
+			WorldCodec.delta(keyframeState, state, bytes);
+			frame.keyframe = keyframe.tick;
+		}
+		bytes.putInt(0, bytes.position() - 4);
+		bytes.put(4, frame.isKeyframe ? KEYFRAME : DELTA);
+		bytes.putLong(5, tick);
+		bytes.putLong(13, time);
+		bytes.flip();
+		frames++;
+
+		frame.users++;
+		if (latest != null)
+			release(latest);
+		latest = frame;
+		if (frame.isKeyframe) {
+			frame.users++;
+			if (keyframe != null)
+				release(keyframe);
+			keyframe = frame;
+		}
+	}
+
+	// starts sending the newest frame to a spectator, unless they're still busy with one (then they skip it)
+	// or already have it; someone without the keyframe it's based on gets that first
+	private void offer(Client client, long now) throws IOException {
+		if (latest == null || client.sentTick == latest.tick)
+			return;
+		if (client.sending != null) {
+			skipped++;
+			return;
+		}
+		Frame frame = latest.isKeyframe || client.keyframe == latest.keyframe ? latest : keyframe;
+		frame.users++;
+		client.sending = frame;
+		client.offset = 0;
+		client.started = now;
+		client.sentTick = frame.tick;
+		if (frame.isKeyframe)
+			client.keyframe = frame.tick;
+		send(client, now);
+	}
+
+	// sends as much of the client's frame as their socket will take without waiting; once it's all gone,
+	// moves on to the newest frame, otherwise waits until the socket has room again
+	private void send(Client client, long now) throws IOException {
+		Frame frame = client.sending;
+		if (frame == null) {
+			client.key.interestOps(SelectionKey.OP_READ);
+			return;
+		}
+		ByteBuffer bytes = frame.bytes; // shared, but only this thread ever moves its position
+		int length = lengthOf(frame);
+		bytes.limit(length);
+		bytes.position(client.offset);
+		int written;
+		try {
+			written = client.channel.write(bytes);
+		} catch (IOException e) {
+			close(client); // they went away
+			return;
+		}
+		client.offset += written;
+		bytesSent += written;
+		if (client.offset < length) {
+			client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			return;
+		}
+		client.sending = null;
+		release(frame);
+		client.key.interestOps(SelectionKey.OP_READ);
+		offer(client, now); // the frame after a keyframe, or whatever came in meanwhile
+	}
+
+	// the whole length of a frame in bytes
+	private static int lengthOf(Frame frame) {
+		return frame.bytes.getInt(0) + 4;
+	}
+
+	// lets a new spectator in; they get the keyframe and the newest frame straight away
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			channel.socket().setSendBufferSize(sendBuffer);
+			Client client = new Client();
+			client.channel = channel;
+			client.key = channel.register(selector, SelectionKey.OP_READ, client);
+			clients.add(client);
+			offer(client, System.nanoTime());
+		}
+	}
+
+	// reads (and ignores) anything a spectator sends, returns false if they have gone
+	private boolean readFrom(Client client) {
+		try {
+			int read;
+			do {
+				ignored.clear();
+				read = client.channel.read(ignored);
+			} while (read > 0);
+			if (read >= 0)
+				return true;
+		} catch (IOException e) {
+			// gone
+		}
+		close(client);
+		return false;
+	}
+
+	// disconnects a spectator
+	private void close(Client client) {
+		if (client.sending != null) {
+			release(client.sending);
+			client.sending = null;
+		}
+		client.key.cancel();
+		try {
+			client.channel.close();
+		} catch (IOException e) {
+			// gone either way
+		}
+		int i = clients.indexOf(client);
+		if (i >= 0) {
+			clients.set(i, clients.get(clients.size() - 1));
+			clients.remove(clients.size() - 1);
+		}
+	}
+
+	// one less user of a frame; when nobody is left it can be filled again
+	private void release(Frame frame) {
+		if (--frame.users == 0)
+			spare.push(frame);
+	}
+
+	// Getter function, returns whether stop() has been called
+	public synchronized boolean isStopped() {
+		return stopped;
+	}
+
+	// Getter function, returns the port the server is listening on
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	// Getter function, returns the time it took to offer each frame to everyone, in nanoseconds
+	// (read it from another thread only once the server has stopped, or for a rough idea)
+	public Histogram getSendCost() {
+		return sendCost;
+	}
+
+	// Summary of what the server sent and what it cost
+	public String report() {
+		return String.format(
+				"Spectator server: %d watching, %d frames (%d keyframes), %.1f MB sent, %d frames skipped by slow spectators, "
+						+ "%d cut off, send cost per frame avg %.1f us, p99 %.1f us, max %.1f us",
+				clients.size(), frames, keyframes, bytesSent / 1e6, skipped, stalled, sendCost.getMean() / 1e3,
+				sendCost.percentile(0.99) / 1e3, sendCost.getMax() / 1e3);
+	}
+}
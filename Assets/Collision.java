@@ -0,0 +1,110 @@
+/* Collision class works out exactly when a moving ball touches a rectangle
+ * The ball is treated as a circle. Sweeping it along its path is the same as sweeping its centre
+ * point against the rectangle grown by the radius with rounded corners, so we intersect the path
+ * with the grown rectangle's sides and, near the corners, with circles around the corners.
+ * The results of the last sweep are kept in this object rather than returned, so nothing gets allocated.
+ */
+
+public class Collision {
+
+	// how close counts as touching, to stop a ball resting against something from hitting it again
+	private static final double epsilon = 1e-9;
+
+	// In order: fraction of the movement done before touching (0 to 1), direction pointing out of the rectangle
+	private double time, normalX, normalY;
+
+	// Sweeps a circle with centre (x, y) and radius r along (dx, dy) against the rectangle
+	// from (left, top) to (right, bottom). Returns true if it touches it on the way, in which
+	// case getTime() and the normal say where. A circle that starts off overlapping doesn't count.
+	public boolean sweep(double x, double y, double r, double dx, double dy, double left, double top, double right,
+			double bottom) {
+		if (overlaps(x, y, r, left, top, right, bottom))
+			return false;
+
+		// slab method against the rectangle grown by r on every side
+		double enter = Double.NEGATIVE_INFINITY, exit = Double.POSITIVE_INFINITY;
+		double enterNormalX = 0, enterNormalY = 0;
+		if (dx != 0) {
+			double t1 = (left - r - x) / dx, t2 = (right + r - x) / dx;
+			double near = Math.min(t1, t2), far = Math.max(t1, t2);
+			if (near > enter) {
+				enter = near;
+				enterNormalX = dx > 0 ? -1 : 1;
+				enterNormalY = 0;
+			}
+			exit = Math.min(exit, far);
+		} else if (x < left - r || x > right + r)
+			return false;
+		if (dy != 0) {
+			double t1 = (top - r - y) / dy, t2 = (bottom + r - y) / dy;
+			double near = Math.min(t1, t2), far = Math.max(t1, t2);
+			if (near > enter) {
+				enter = near;
+				enterNormalX = 0;
+				enterNormalY = dy > 0 ? -1 : 1;
+			}
+			exit = Math.min(exit, far);
+		} else if (y < top - r || y > bottom + r)
+			return false;
+		if (enter > exit || enter > 1 || exit <= epsilon)
+			return false;
+
+		// where the centre is when it reaches the grown rectangle
+		double t = Math.max(enter, 0);
+		double hitX = x + dx * t, hitY = y + dy * t;
+		boolean besideX = hitX >= left && hitX <= right, besideY = hitY >= top && hitY <= bottom;
+		if (besideX || besideY) {
+			// hit a flat side
+			time = t;
+			normalX = enterNormalX;
+			normalY = enterNormalY;
+			return enter >= -epsilon;
+		}
+
+		// in a corner square: the ball can only be touching the corner itself
+		double cornerX = hitX < left ? left : right, cornerY = hitY < top ? top : bottom;
+		return sweepPoint(x, y, r, dx, dy, cornerX, cornerY);
+	}
+
+	// Sweeps a circle against a single point (a rectangle's corner), same rules as sweep()
+	private boolean sweepPoint(double x, double y, double r, double dx, double dy, double pointX, double pointY) {
+		// solve |start + d * t - point| = r for the smallest t
+		double fx = x - pointX, fy = y - pointY;
+		double a = dx * dx + dy * dy, b = 2 * (fx * dx + fy * dy), c = fx * fx + fy * fy - r * r;
+		if (a == 0 || b >= 0)
+			return false; // not moving, or moving away
+		double discriminant = b * b - 4 * a * c;
+		if (discriminant < 0)
+			return false;
+		double t = (-b - Math.sqrt(discriminant)) / (2 * a);
+		if (t < 0 || t > 1)
+			return false;
+		time = t;
+		normalX = (fx + dx * t) / r;
+		normalY = (fy + dy * t) / r;
+		return true;
+	}
+
+	// Returns true if the circle with centre (x, y) and radius r overlaps the rectangle (touching doesn't count)
+	public static boolean overlaps(double x, double y, double r, double left, double top, double right,
+			double bottom) {
+		double nearestX = Math.max(left, Math.min(x, right)), nearestY = Math.max(top, Math.min(y, bottom));
+		double distanceX = x - nearestX, distanceY = y - nearestY;
+		return distanceX * distanceX + distanceY * distanceY < r * r - epsilon;
+	}
+
+	// Getter function, returns the fraction of the movement done before touching
+	public double getTime() {
+		return time;
+	}
+
+	// Getter function, returns the x part of the direction pointing out of whatever was hit
+	public double getNormalX() {
+		return normalX;
+	}
+
+	// Getter function, returns the y part of the direction pointing out of whatever was hit
+	public double getNormalY() {
+		return normalY;
+	}
+}
@@ -0,0 +1,9 @@
+/* Controller interface is anything that can play a paddle instead of a person at the keyboard
+ * update() is called once per tick, before the World moves, and presses or releases keys through the World
+ */
+
+public interface Controller {
+
+	// decide what to press for the right (true) or left (false) paddle this tick
+	void update(World world, boolean rightPlayer);
+}
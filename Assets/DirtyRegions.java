@@ -0,0 +1,104 @@
+import java.awt.Rectangle;
+
+/* DirtyRegions class collects the parts of the screen that changed since the last frame
+ * Rectangles that overlap (or nearly touch) are merged as they are added, so a ball moving a few
+ * pixels is one small rectangle rather than two. Past a handful of rectangles, or once they cover
+ * most of the screen, it gives up and counts the whole screen as dirty - one big redraw is cheaper
+ * than lots of little ones by then.
+ */
+
+public class DirtyRegions {
+
+	// In order: most rectangles kept before the whole screen counts as dirty, how close two can be before they're merged
+	private static final int maxRegions = 8, mergeDistance = 4;
+
+	// In order: the size of the whole screen, the rectangles (only the first count are in use), whether it's all dirty
+	private final int width, height;
+	private final Rectangle[] regions = new Rectangle[maxRegions];
+	private int count;
+	private boolean full;
+
+	// Constructor, accepts the size of the whole screen
+	public DirtyRegions(int width, int height) {
+		this.width = width;
+		this.height = height;
+		for (int i = 0; i < maxRegions; i++)
+			regions[i] = new Rectangle();
+	}
+
+	// Marks a rectangle as dirty (clipped to the screen; empty ones are ignored)
+	public void add(int x, int y, int w, int h) {
+		if (full)
+			return;
+		int left = Math.max(0, x), top = Math.max(0, y);
+		int right = Math.min(width, x + w), bottom = Math.min(height, y + h);
+		if (right <= left || bottom <= top)
+			return;
+
+		// grow into any rectangle close enough, then keep merging while the grown one reaches others
+		for (int i = 0; i < count; i++) {
+			Rectangle region = regions[i];
+			if (left > region.x + region.width + mergeDistance || region.x > right + mergeDistance
+					|| top > region.y + region.height + mergeDistance || region.y > bottom + mergeDistance)
+				continue;
+			left = Math.min(left, region.x);
+			top = Math.min(top, region.y);
+			right = Math.max(right, region.x + region.width);
+			bottom = Math.max(bottom, region.y + region.height);
+			regions[i] = regions[--count];
+			regions[count] = region;
+			i = -1; // start again, the bigger rectangle might reach ones already passed
+		}
+		if (count == maxRegions || (long) (right - left) * (bottom - top) * 2 > (long) width * height) {
+			addAll();
+			return;
+		}
+		regions[count++].setBounds(left, top, right - left, bottom - top);
+	}
+
+	// Marks a rectangle as dirty
+	public void add(Rectangle rectangle) {
+		add(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+	}
+
+	// Marks the whole screen as dirty
+	public void addAll() {
+		full = true;
+		count = 1;
+		regions[0].setBounds(0, 0, width, height);
+	}
+
+	// Forgets everything, ready for the next frame
+	public void clear() {
+		full = false;
+		count = 0;
+	}
+
+	// Getter function, returns whether the whole screen is dirty
+	public boolean isFull() {
+		return full;
+	}
+
+	// Getter function, returns whether nothing at all is dirty
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	// Getter function, returns how many rectangles are dirty
+	public int getCount() {
+		return count;
+	}
+
+	// Getter function, returns dirty rectangle i (0 to getCount() - 1; don't change or keep it)
+	public Rectangle get(int i) {
+		return regions[i];
+	}
+
+	// Getter function, returns the number of dirty pixels (rectangles never overlap, so this is exact)
+	public long getArea() {
+		long area = 0;
+		for (int i = 0; i < count; i++)
+			area += (long) regions[i].width * regions[i].height;
+		return area;
+	}
+}
@@ -0,0 +1,208 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.locks.LockSupport;
+
+/* FrameScheduler class paces the game loop
+ * Hands out fixed 60 Hz physics ticks, parks the game thread in between instead of spinning,
+ * and caps how many missed ticks get caught up on so a long stall can't snowball.
+ * Can also go fully idle until something (usually a keypress) wakes it back up.
+ * Frames can be drawn more often than ticks run (setFrameRate()): the frames then set the pace, each one
+ * running whatever ticks have come due first (usually none), and getTickFraction() says how far we are
+ * through the current tick, so the picture can be placed between the last two ticks. Each tick is still
+ * exactly 1/60 s of game, and there are still 60 of them a second. Without a frame rate, each frame
+ * shows the tick just run, as it always did.
+ * Keeps track of CPU used and how late each wake-up was so it can report on itself.
+ */
+
+public class FrameScheduler {
+
+	// In order: physics ticks per second, length of one tick in nanoseconds
+	// In order: most ticks run back to back after a stall, how close to the deadline we stop parking and start yielding
+	public static final int TICKS_PER_SECOND = 60;
+	public static final long TICK_NANOS = 1000000000L / TICKS_PER_SECOND;
+	private static final int MAX_CATCH_UP = 5;
+	private static final long YIELD_WINDOW = 1000000L;
+
+	// In order: the thread being paced, when the next tick is due, whether someone asked us to wake up
+	private Thread owner;
+	private long nextTick;
+	private volatile boolean woken;
+
+	// In order: time between frames in nanoseconds (0 to draw once per pass, after the ticks), when the last frame was due
+	private long frameNanos, lastFrame;
+
+	// Statistics: when we started (wall clock and thread CPU), ticks handed out and dropped,
+	// number of timed waits, total and worst lateness of those waits, time spent idle
+	private long startTime, startCpu, ticks, droppedTicks, waits, totalLateness, maxLateness, idleTime;
+
+	// when the loop finished and the CPU time its thread had used by then (the thread can't be asked once it's gone)
+	private long endTime, endCpu;
+	private boolean finished;
+
+	// Must be called from the thread that will be paced, right before its loop starts
+	public void start() {
+		owner = Thread.currentThread();
+		startTime = System.nanoTime();
+		startCpu = threadCpuTime();
+		nextTick = startTime + TICK_NANOS;
+		lastFrame = startTime;
+		finished = false;
+	}
+
+	// Should be called from the paced thread when its loop ends, so report() still knows its CPU use afterwards
+	public void finish() {
+		endCpu = threadCpuTime();
+		endTime = System.nanoTime();
+		finished = true;
+	}
+
+	// Blocks until at least one tick is due, then returns how many ticks should be run now
+	public int awaitTicks() {
+		long now = System.nanoTime();
+		if (now < nextTick) {
+			sleepUntil(nextTick);
+			now = System.nanoTime();
+			recordLateness(now - nextTick);
+		}
+		return takeTicks(now);
+	}
+
+	// hands out every tick due by now (at least one, now must be past nextTick)
+	private int takeTicks(long now) {
+		int due = (int) ((now - nextTick) / TICK_NANOS) + 1;
+		if (due > MAX_CATCH_UP) {
+			// too far behind to catch up, so drop the backlog instead of spiralling
+			droppedTicks += due - MAX_CATCH_UP;
+			due = MAX_CATCH_UP;
+			nextTick = now + TICK_NANOS;
+		} else
+			nextTick += due * TICK_NANOS;
+		ticks += due;
+		return due;
+	}
+
+	// Blocks until the next frame is due, then returns how many ticks should be run before drawing it (often 0)
+	// Without a frame rate set this is just awaitTicks()
+	public int awaitTicksOrFrame() {
+		if (frameNanos == 0)
+			return awaitTicks();
+		long nextFrame = lastFrame + frameNanos;
+		long now = System.nanoTime();
+		if (now < nextFrame) {
+			sleepUntil(nextFrame);
+			now = System.nanoTime();
+			recordLateness(now - nextFrame);
+		}
+		// stay on the same beat unless we missed a whole frame
+		lastFrame = now - nextFrame < frameNanos ? nextFrame : now;
+		return now >= nextTick ? takeTicks(now) : 0;
+	}
+
+	// Sets how many frames a second awaitTicksOrFrame() wakes up for: 0 (or anything up to the tick rate) draws
+	// once per tick as before, infinity as often as the loop can go round
+	public void setFrameRate(double framesPerSecond) {
+		if (framesPerSecond <= TICKS_PER_SECOND)
+			frameNanos = 0;
+		else
+			frameNanos = Math.max(1, (long) (1e9 / framesPerSecond));
+	}
+
+	// Getter function, returns how far through the current tick we are (0 just after the last one ran,
+	// nearly 1 just before the next one is due), for drawing things part of the way between the last two ticks
+	// Without a frame rate set, every frame is drawn straight after the tick it shows, so this is 1: there's
+	// nothing to draw between, and placing it part of the way would only show the tick before, a tick late
+	public double getTickFraction() {
+		if (frameNanos == 0)
+			return 1;
+		double fraction = 1 - (double) (nextTick - System.nanoTime()) / TICK_NANOS;
+		return fraction < 0 ? 0 : fraction > 1 ? 1 : fraction;
+	}
+
+	// counts one timed wait that woke up lateness nanoseconds after it meant to
+	private void recordLateness(long lateness) {
+		waits++;
+		totalLateness += lateness;
+		if (lateness > maxLateness)
+			maxLateness = lateness;
+	}
+
+	// Parks the thread until wake() is called, then restarts the tick clock from now
+	public void idle() {
+		long idleStart = System.nanoTime();
+		while (!woken)
+			LockSupport.park(this);
+		woken = false;
+		long now = System.nanoTime();
+		idleTime += now - idleStart;
+		nextTick = now + TICK_NANOS;
+	}
+
+	// Wakes the paced thread up if it is idle; safe to call from any thread
+	public void wake() {
+		woken = true;
+		if (owner != null)
+			LockSupport.unpark(owner);
+	}
+
+	// Parks for most of the wait, then yields the last stretch for sub-millisecond accuracy
+	private void sleepUntil(long deadline) {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			if (remaining > YIELD_WINDOW)
+				LockSupport.parkNanos(this, remaining - YIELD_WINDOW);
+			else
+				Thread.yield();
+		}
+	}
+
+	// Getter function, returns the CPU time used by the paced thread, or -1 if the JVM can't tell
+	private long threadCpuTime() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (owner == null || !bean.isThreadCpuTimeSupported())
+			return -1;
+		try {
+			return bean.getThreadCpuTime(owner.getId());
+		} catch (UnsupportedOperationException e) {
+			return -1;
+		}
+	}
+
+	// Getter function, returns the fraction of one core the paced thread has used since start() (until finish())
+	public double getCpuLoad() {
+		long cpu = finished ? endCpu : threadCpuTime();
+		long wall = (finished ? endTime : System.nanoTime()) - startTime;
+		if (cpu < 0 || startCpu < 0 || wall <= 0)
+			return -1;
+		return (double) (cpu - startCpu) / wall;
+	}
+
+	// Getter function, returns the average lateness of a timed wait in nanoseconds
+	public double getAveragePacingError() {
+		return waits == 0 ? 0 : (double) totalLateness / waits;
+	}
+
+	// Getter function, returns the worst lateness of a timed wait in nanoseconds
+	public long getMaxPacingError() {
+		return maxLateness;
+	}
+
+	// Getter function, returns the number of ticks handed out so far
+	public long getTicks() {
+		return ticks;
+	}
+
+	// Getter function, returns the number of ticks thrown away because we fell too far behind
+	public long getDroppedTicks() {
+		return droppedTicks;
+	}
+
+	// Summary of how the loop has been doing; a busy-wait loop would sit at 100% of a core
+	public String report() {
+		double load = getCpuLoad();
+		String cpu = load < 0 ? "cpu n/a"
+				: String.format("cpu %.1f%% of one core (saved %.1f%% vs busy-wait)", load * 100,
+						(1 - load) * 100);
+		return String.format("Scheduler: %d ticks, %d dropped, idle %.1f s, %s, pacing error avg %.3f ms, max %.3f ms",
+				ticks, droppedTicks, idleTime / 1e9, cpu, getAveragePacingError() / 1e6, maxLateness / 1e6);
+	}
+}
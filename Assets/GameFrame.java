@@ -1,22 +1,41 @@
+import java.awt.BufferCapabilities;
 import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
 import java.io.IOException;
 
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
 /* GameFrame class
- * Creates the window for the program.
+ * Creates the window for the program (only one, for the whole time the program runs).
  * Runs the StartPage and GamePanel constructors.
+ * Can also draw the GamePanel straight to the screen through a BufferStrategy (active rendering),
+ * so the game loop doesn't have to wait for Swing to get around to repainting.
  * Child of JFrame
  */
 
 @SuppressWarnings("serial")
 public class GameFrame extends JFrame {
 
+	// set -Dpong.passiveRendering=true to fall back to plain Swing repaint()
+	private static final boolean activeRendering = !Boolean.getBoolean("pong.passiveRendering");
+
 	GamePanel panel;
 	StartPage start;
 
+	// In order: the page flipping strategy, where the panel sits inside the frame
+	// In order: frames that made it onto the screen, frames thrown away because the buffer was lost
+	// whether the back buffer still holds the last frame after it is shown
+	private BufferStrategy strategy;
+	private Point panelOffset;
+	private long framesPresented, framesDropped;
+	private boolean keepsLastFrame;
+
 	public GameFrame(boolean flag) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
 
 		if (!flag) {
@@ -25,6 +44,7 @@ public class GameFrame extends JFrame {
 		} else {
 			panel = new GamePanel();
 			this.add(panel);
+			this.setIgnoreRepaint(activeRendering); // the game loop draws this window itself
 		}
 		this.setTitle("Modified Pong!"); // set title for frame
 		this.setResizable(false); // frame can't change size
@@ -36,9 +56,75 @@ public class GameFrame extends JFrame {
 		this.setLocationRelativeTo(null);// set window in middle of screen
 	}
 
-	// Closes StartPage and boots up the main game
+	// Swaps the StartPage for the main game, in the same window
+	// (the window then stays for every match after it, see GamePanel.newGame())
 	public void start() throws UnsupportedAudioFileException, IOException, LineUnavailableException {
-		Main.game = new GameFrame(true);
-		this.dispose();
+		if (start == null)
+			return; // already started (a second key press got here first)
+		this.remove(start);
+		start = null;
+		panel = new GamePanel();
+		this.add(panel);
+		this.setIgnoreRepaint(activeRendering); // the game loop draws this window itself
+		this.pack();
+		panel.requestFocusInWindow(); // so the keys go to the game now
+		Main.game = this;
+	}
+
+	// Draws a frame of the panel straight to the screen, from whatever thread calls it
+	// Returns false if active rendering is off or the window isn't ready yet, in which
+	// case the caller should repaint() normally
+	public boolean present(GamePanel panel) {
+		if (!activeRendering || !isDisplayable() || !isVisible())
+			return false;
+		try {
+			boolean everything = false;
+			if (strategy == null) {
+				createBufferStrategy(2);
+				strategy = getBufferStrategy();
+				panelOffset = SwingUtilities.convertPoint(panel, 0, 0, this);
+				// a back buffer that is copied to the screen still holds the last frame, so only what
+				// changed needs copying into it; a flipped one holds the frame before that
+				BufferCapabilities capabilities = strategy.getCapabilities();
+				keepsLastFrame = !capabilities.isPageFlipping()
+						|| capabilities.getFlipContents() == BufferCapabilities.FlipContents.COPIED;
+				everything = true;
+			}
+
+			// the buffer can be lost at any point (another program grabbed the graphics
+			// card, the window got moved to another screen...) so keep drawing until a
+			// whole frame makes it onto the screen
+			do {
+				do {
+					Graphics g = strategy.getDrawGraphics();
+					g.translate(panelOffset.x, panelOffset.y);
+					panel.blit(g, everything || !keepsLastFrame);
+					g.dispose();
+					if (strategy.contentsRestored()) {
+						framesDropped++;
+						everything = true;
+					}
+				} while (strategy.contentsRestored());
+				strategy.show();
+				if (strategy.contentsLost()) {
+					framesDropped++;
+					everything = true;
+				}
+			} while (strategy.contentsLost());
+		} catch (IllegalStateException e) {
+			// window went away underneath us, try again with a new strategy next frame
+			strategy = null;
+			framesDropped++;
+			return false;
+		}
+		Toolkit.getDefaultToolkit().sync(); // stops lag on Linux
+		framesPresented++;
+		return true;
+	}
+
+	// Summary of how active rendering has been doing
+	public String report() {
+		return String.format("Renderer: %s, %d frames presented, %d dropped",
+				activeRendering ? "active" : "passive", framesPresented, framesDropped);
 	}
 }
\ No newline at end of file
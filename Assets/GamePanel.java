@@ -1,18 +1,17 @@
-import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Image;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Window;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.image.VolatileImage;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /* GamePanel class acts as the main "game loop" - continuously runs the game and calls whatever needs to be called
  * Child of JPanel because JPanel contains methods for drawing to the screen
@@ -24,62 +23,110 @@ import javax.swing.JPanel;
 public class GamePanel extends JPanel implements Runnable, KeyListener {
 
 	// dimensions of window
-	public static final int GAME_WIDTH = 300;
-	public static final int GAME_HEIGHT = 300;
-
-	// friction
-	private static double friction = 0.01;
+	public static final int GAME_WIDTH = World.GAME_WIDTH;
+	public static final int GAME_HEIGHT = World.GAME_HEIGHT;
 
 	// GUI
 	private Thread gameThread;
-	private Image image;
-	private Graphics graphics;
-
-	// Objects in game
-	private Ball ball;
-	private Paddle rightPaddle, leftPaddle;
-	private Score rightScore, leftScore;
-
-	// Constants
-	private int paddleBorder, won;
-	private boolean randomise, disable, stuck, newRound;
-	
-	// Sound effects
-	private Sound background, hitWall, hitPaddle, scored, winningMusic, randomisedMusic;
+	private FrameScheduler scheduler;
+	private VolatileImage image;
+
+	// Set from any thread, read by the game thread: whether the loop should keep going,
+	// whether it is paused (p), and whether a new game has been asked for
+	private volatile boolean running, paused, restart;
+
+	// Everything in the game: ball, paddles, scores and the rules
+	// Only the game thread touches the world. It publishes a copy for drawing after every tick
+	// through states, and key events reach it through input, which it empties at the start of each tick.
+	private World world;
+	private StateBuffer states;
+	private Renderer renderer;
+	private final InputRing input = new InputRing();
+
+	// In order: the state last published and the round it was in (in a new round everything is put back,
+	// so the next state doesn't move things there from where they were), only touched by the game thread
+	private RenderState published;
+	private int publishedRound;
+
+	// the last few states of the match, so it can carry on if the program is closed or dies (null if turned off),
+	// and the ticks since the last one was written
+	private SnapshotRing snapshots;
+	private int ticksSinceSnapshot;
+
+	// ticks between snapshots (one is always written when someone scores, or the game is paused or stopped)
+	private static final int snapshotTicks = Integer.getInteger("pong.snapshotTicks", 30);
+
+	// sends the match to anyone watching (see BroadcastServer), null unless pong.broadcast is set to a port,
+	// and the number of states it has been sent
+	private BroadcastServer broadcast;
+	private long broadcastTick;
+
+	// the computer playing the right paddle, null when a person is (i switches between them)
+	private AiController ai;
+
+	// the game over the network when there is one (Main.net), otherwise null
+	// In order: the paddle keys held on this keyboard, one-off keys (n, r) pressed since the last tick
+	private final NetSession session;
+	private int netKeys, netPresses;
+
+	// Held by whoever is drawing (the game thread when rendering actively, the EDT in paint()),
+	// so that only one of them reads from states at a time. The simulation never takes it.
+	private final Object renderLock = new Object();
+
+	// Parts of the screen that changed in the frame being drawn, whether the pause message and the
+	// timings were on the last frame drawn, and whether the next frame has to be drawn all over again
+	// (only touched while holding renderLock)
+	private final DirtyRegions dirty = new DirtyRegions(GAME_WIDTH, GAME_HEIGHT);
+	private boolean drawnPaused, drawnStats, redrawAll = true;
+
+	// In order: the frame being drawn, with the ball and paddles placed between the last two ticks,
+	// and how far between them (how far the loop is through the current tick; only touched holding renderLock)
+	private final RenderState frame = new RenderState();
+	private double tickFraction = 1;
+
+	// In order: pixels drawn again, frames drawn (for how much of the screen an average frame redraws)
+	private long dirtyPixels, frames;
+
+	// timings of the loop, and whether they are shown on screen (h toggles it)
+	private final LoopStats stats = new LoopStats();
+	private volatile boolean showStats;
+
+	// Music, and the mixer and ids of the short sound effects
+	private Sound background, winningMusic, randomisedMusic;
+	private SoundMixer effects;
+	private int hitWall, hitPaddle, scored;
 
 	public GamePanel() throws UnsupportedAudioFileException, IOException, LineUnavailableException {
 
-		// Initialize constants
-		paddleBorder = 45;
-		randomise = false;
-		disable = false;
-		won = 0;
-		stuck = false;
-		newRound = false;
-		
-		// Initialize sounds
-		background = new Sound("GameBackground.wav");
-		hitWall = new Sound("PuckHitWall.wav");
-		hitWall.setVolume(0.1f);
-		hitPaddle = new Sound("PuckHitPaddle.wav");
-		scored = new Sound("Scored.wav");
-		winningMusic = new Sound("SomeoneWon.wav");
-		randomisedMusic = new Sound("RandomMusic.wav");
-
-		// create a player controlled ball, randomize starting side, angle
-		boolean flag = Math.random() < 0.5;
-		ball = new Ball(flag ? 30 : GAME_WIDTH - 30 - Ball.getInitialDiameter() / 2,
-				GAME_HEIGHT / 2 - Ball.getInitialDiameter());
-		ball.setAngle(flag ? convertAngle((Math.random() - 0.5) * Math.PI / 2.0)
-				: convertAngle((Math.random() - 0.5) * Math.PI / 2.0 + Math.PI));
-
-		// create the two player paddles
-		rightPaddle = new Paddle(true);
-		leftPaddle = new Paddle(false);
-
-		// create the two score counts
-		rightScore = new Score(true);
-		leftScore = new Score(false);
+		// Initialize sounds (decoded once by AssetCache, usually while the start page was up)
+		background = AssetCache.sound("GameBackground.wav");
+		effects = SoundMixer.get();
+		hitWall = AssetCache.effect("PuckHitWall.wav");
+		hitPaddle = AssetCache.effect("PuckHitPaddle.wav");
+		scored = AssetCache.effect("Scored.wav");
+		winningMusic = AssetCache.sound("SomeoneWon.wav");
+		randomisedMusic = AssetCache.sound("RandomMusic.wav");
+
+		// create the ball, paddles and scores, and something to draw them with
+		// (every match gets a seed and is recorded, so it can be played back exactly with Replay;
+		// a game over the network belongs to the NetSession and isn't, as rollbacks would muddle the recording)
+		// (a match that was going when the program last stopped carries on instead, unrecorded)
+		session = Main.net;
+		if (session != null)
+			world = session.getWorld();
+		else {
+			snapshots = openSnapshots();
+			world = snapshots == null ? null : snapshots.restore();
+			if (world != null && world.getWon() == 0)
+				resumed();
+			else {
+				world = new World(newSeed());
+				record(world);
+			}
+		}
+		states = new StateBuffer();
+		publish(false);
+		renderer = new Renderer();
 
 		this.setFocusable(true); // make everything in this class appear on the screen
 		this.addKeyListener(this); // start listening for keyboard input
@@ -89,319 +136,479 @@ public class GamePanel extends JPanel implements Runnable, KeyListener {
 		// class would "pause" while another class runs). By using threading we can
 		// remove lag, and also allows us to do features like display timers in real
 		// time!
-		gameThread = new Thread(this);
+		scheduler = new FrameScheduler();
+		scheduler.setFrameRate(frameRate());
+		start();
+	}
+
+	// how many frames a second to draw: pong.fps if it is set ("max" for as many as possible), otherwise as
+	// often as the screen refreshes (ticks are always 60 a second; anything up to that draws once per tick)
+	private static double frameRate() {
+		String fps = System.getProperty("pong.fps", "");
+		if (fps.equals("max"))
+			return Double.POSITIVE_INFINITY;
+		if (!fps.isEmpty())
+			return Double.parseDouble(fps);
+		if (GraphicsEnvironment.isHeadless())
+			return 0;
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode()
+				.getRefreshRate(); // DisplayMode.REFRESH_RATE_UNKNOWN is 0
+	}
+
+	// Starts the game thread (does nothing if it is already running)
+	// The panel lives as long as the window: one thread plays every match, and stop() ends it
+	public synchronized void start() {
+		if (gameThread != null)
+			return;
+		running = true;
+		if (broadcast == null || broadcast.isStopped())
+			broadcast = openBroadcast();
+		gameThread = new Thread(this, "Game loop");
 		gameThread.start();
 		background.loop();
 	}
 
+	// Stops the game thread and waits for it to finish, then stops the music (start() carries on from there)
+	public void stop() throws InterruptedException {
+		Thread thread;
+		synchronized (this) {
+			thread = gameThread;
+			gameThread = null;
+			running = false;
+		}
+		if (thread == null)
+			return;
+		scheduler.wake();
+		thread.join();
+		if (broadcast != null)
+			broadcast.stop(); // anyone watching is disconnected, start() opens the port again
+		background.stop();
+		randomisedMusic.stop();
+	}
+
+	// Pauses or carries on the game (the loop sleeps until then); can't pause a game over the network,
+	// as the other computer would be left waiting
+	public void setPaused(boolean paused) {
+		if (session != null)
+			return;
+		this.paused = paused;
+		scheduler.wake();
+	}
+
+	// Asks the game thread to start a new game in the same window, from any thread
+	// (ignored over the network, where n starts a new game on both computers instead)
+	public void newGame() {
+		if (session != null)
+			return;
+		restart = true;
+		scheduler.wake();
+	}
+
 	// paint is a method in java.awt library that we are overriding. It is a special
 	// method - it is called automatically in the background in order to update what
 	// appears in the window. You NEVER call paint() yourself
+	// Only used when the frame can't render actively (or asks Swing to repaint)
 	public void paint(Graphics g) {
 		// we are using "double buffering here" - if we draw images directly onto the
 		// screen, it takes time and the human eye can actually notice flashes of lag as
 		// each pixel on the screen is drawn one at a time. Instead, we are going to
 		// draw images OFF the screen, then simply move the image on screen as needed.
-		image = createImage(GAME_WIDTH, GAME_HEIGHT); // draw off screen
-		graphics = image.getGraphics();
-
-		if (won == 0) {
-			draw(graphics); // update the positions of everything on the screen
+		// The off screen image is kept between frames and only the parts that changed
+		// get drawn again (see updateImage()); Swing only asks for the parts we passed
+		// to repaint(), and clips to them.
+		synchronized (renderLock) {
+			do {
+				if (image == null || image.contentsLost()) {
+					updateImage(true); // the graphics card threw it away, so all of it
+					redrawAll = true; // and the screen outside this paint() needs it too
+				}
+				g.drawImage(image, 0, 0, this); // move the image on the screen
+			} while (image.contentsLost());
+		}
+	}
 
-			// marks borders
-			graphics.setColor(Color.white);
-			graphics.drawLine(paddleBorder, 0, paddleBorder, GAME_HEIGHT);
-			graphics.drawLine(GAME_WIDTH - paddleBorder, 0, GAME_WIDTH - paddleBorder, GAME_HEIGHT);
+	// brings the off screen image up to date with the latest state, drawing only the parts that changed
+	// since last time (everything, if asked or if the image is new or was lost); dirty then holds those parts
+	private void updateImage(boolean everything) {
+		int valid = image == null ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(getGraphicsConfiguration());
+		if (valid == VolatileImage.IMAGE_INCOMPATIBLE)
+			image = createVolatileImage(GAME_WIDTH, GAME_HEIGHT); // draw off screen
+		frame.interpolate(states.latest(), tickFraction);
+		RenderState state = frame;
+		boolean paused = this.paused, showStats = this.showStats;
+
+		renderer.damage(state, dirty);
+		if (everything || valid != VolatileImage.IMAGE_OK || paused != drawnPaused || showStats != drawnStats)
+			dirty.addAll();
+		else if (showStats)
+			dirty.add(0, 0, LoopStats.OVERLAY_WIDTH, LoopStats.OVERLAY_HEIGHT); // its numbers change every frame
+		drawnPaused = paused;
+		drawnStats = showStats;
+
+		// the whole frame is drawn for each part, clipped to it, so whatever overlaps it comes out right
+		renderer.update(state);
+		Graphics graphics = image.getGraphics();
+		for (int i = 0; i < dirty.getCount(); i++) {
+			graphics.setClip(dirty.get(i));
+			renderer.redraw(graphics, state);
+			if (paused)
+				TextCache.PAUSED.draw(graphics, (int) (GAME_WIDTH * 0.2), GAME_HEIGHT / 2);
+			if (showStats)
+				stats.draw(graphics);
+		}
+		graphics.dispose();
+		dirtyPixels += dirty.getArea();
+		frames++;
+	}
 
-			// what happens if it is stuck
-			if (stuck) {
-				graphics.setFont(new Font("Consolas", Font.PLAIN, 10));
-				graphics.drawString("Ball stuck! Press n to move on.", (int) (GAME_WIDTH * 0.2), GAME_HEIGHT / 2);
+	// Copies the current frame onto g (a window's back buffer): only the parts that changed since the last one,
+	// unless everything is true (otherwise g must still hold the previous frame)
+	public void blit(Graphics g, boolean everything) {
+		synchronized (renderLock) {
+			if (everything || dirty.isFull()) {
+				g.drawImage(image, 0, 0, null);
+				return;
 			}
-			// what happens when it's a new round
-			else if (newRound) {
-				graphics.setFont(new Font("Consolas", Font.PLAIN, 10));
-				graphics.drawString("Press n to start the next round.", (int) (GAME_WIDTH * 0.2), GAME_HEIGHT / 2);
+			for (int i = 0; i < dirty.getCount(); i++) {
+				Rectangle r = dirty.get(i);
+				g.drawImage(image, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height,
+						null);
 			}
-			// what happens normally
-			else
-				graphics.drawLine(GAME_WIDTH / 2, 0, GAME_WIDTH / 2, GAME_HEIGHT);
-		} else {
-			// what happens when a player wins
-			draw(graphics);
-			graphics.setFont(new Font("Consolas", Font.PLAIN, 15));
-			graphics.drawString(
-					(won == 1 ? "Player 2 " : "Player 1 ") + "won " + leftScore.value + " : " + rightScore.value + "!",
-					(int) (GAME_WIDTH * 0.25), GAME_HEIGHT / 2);
-			graphics.drawString("Press n to start a new game.", (int) (GAME_WIDTH * 0.15), (int) (GAME_HEIGHT * 0.55));
 		}
-		g.drawImage(image, 0, 0, this); // move the image on the screen
-
 	}
 
-	// resets objects to default settings
-	public void reset() {
-
-		paddleBorder = 45;
-
-		boolean flag = Math.random() < 0.5;
-		ball = new Ball(flag ? 30 : GAME_WIDTH - 30 - Ball.getInitialDiameter() / 2,
-				GAME_HEIGHT / 2 - Ball.getInitialDiameter());
-		ball.setAngle(flag ? convertAngle((Math.random() - 0.5) * Math.PI / 2.0)
-				: convertAngle((Math.random() - 0.5) * Math.PI / 2.0 + Math.PI));
-		ball.isRandom(randomise);
+	// run() method is what makes the game continue running without end. It calls
+	// other methods to move objects, check for collision, and update the screen
+	public void run() {
+		// the CPU runs our game code too quickly - we need to slow it down! The
+		// scheduler parks this thread until the next 1/60 s tick is due, and when
+		// nothing can move (someone won, the ball is stuck, or we're waiting for the
+		// next round, or paused) it sleeps completely until a key wakes it up. Over the
+		// network it never sleeps, as the other computer needs to hear from us every tick.
+		// Frames can come more often than ticks (pong.fps, or the screen's refresh rate): the
+		// loop then also wakes between ticks to draw, with everything moved part of the way
+		// from the last tick towards the current one, so motion is smooth at 120 or 144 Hz
+		// while the game itself still steps exactly 1/60 s at a time.
+		scheduler.start();
+
+		while (running) { // this is the game loop, until stop() is called
+			// while nothing moves, keys are read here (one of them is what woke us up); otherwise each
+			// tick reads them just before it runs, so they count as waiting until then
+			if (paused || (session == null && world.isWaiting()))
+				handleInput();
+			if (restart) {
+				restart = false;
+				startNewGame();
+			}
+			if (paused || (session == null && world.isWaiting())) {
+				if (paused)
+					saveSnapshot();
+				publish(false); // so the frame left up while asleep shows things where they are
+				present();
+				stats.pause();
+				scheduler.idle();
+				continue;
+			}
 
-		rightPaddle = new Paddle(true);
-		leftPaddle = new Paddle(false);
+			// run every tick that is due (more than one if we fell behind, none if it's only time to draw), then draw once
+			int ticks = scheduler.awaitTicksOrFrame();
+			for (int i = 0; i < ticks && (session != null || !world.isWaiting()); i++) {
+				long start = System.nanoTime();
+				handleInput();
+				if (ai != null)
+					ai.update(world, true);
+				if (session != null) {
+					if (!step())
+						continue;
+				} else {
+					world.tick();
+					snapshot(world.getEvents());
+				}
+				playSounds(world.getEvents());
+				publish(true);
+				stats.tick(System.nanoTime() - start, world.getEvents());
+			}
+			stats.pass(ticks);
+			present();
+		}
+		saveSnapshot();
+		scheduler.finish();
+	}
 
-		if (randomise)
-			randomise();
+	// runs the next tick of a game over the network with the keys held here, returns false if it had to
+	// wait for the other computer instead (the one-off keys are kept for the next try)
+	private boolean step() {
+		try {
+			if (!session.tick(netKeys | netPresses))
+				return false;
+		} catch (IOException e) {
+			System.out.println("Lost the connection: " + e.getMessage());
+			return false;
+		}
+		netPresses = 0;
+		return true;
+	}
 
+	// starts the next match in place: the same world, window and thread, just a new game in the world
+	private void startNewGame() {
+		randomisedMusic.stop();
+		world.endGame();
+		world.newGame(newSeed());
+		record(world);
 	}
 
-	// randomises different aspects of the game
-	public void randomise() {
-		paddleBorder = (int) (Math.random() * 75) + 20;
-		ball.setSpeed(Math.random() * 6 + 2.5);
-		ball.setDiameter((int) (Math.random() * 30) + 10);
-		rightPaddle.setLength((int) (Math.random() * 30) + 15);
-		leftPaddle.setLength((int) (Math.random() * 30) + 15);
+	// the seed for a new match: pong.seed if it is set, otherwise the clock
+	private static long newSeed() {
+		return Long.getLong("pong.seed", System.nanoTime());
 	}
 
-	// call the draw methods in each class to update positions as things move
-	public void draw(Graphics g) {
-		if (won == 0) {
-			if (!stuck) {
-				ball.draw(g);
-			}
-			rightScore.draw(g);
-			leftScore.draw(g);
-		}
-		if (won == 0 || won == 1)
-			rightPaddle.draw(g);
-		if (won == 0 || won == -1)
-			leftPaddle.draw(g);
-	}
-
-	// call the move methods in other classes to update positions
-	// this method is constantly called from run(). By doing this, movements appear
-	// fluid and natural. If we take this out the movements appear sluggish and
-	// laggy
-	public void move() {
-		ball.move();
-		rightPaddle.move();
-		leftPaddle.move();
-	}
-
-	// handles all collision detection and responds accordingly
-	public void checkCollision() {
-		// elastic collision formulas to calculate resulting velocity of the ball
-		if (ball.intersects(rightPaddle)) {
-			ball.setAngle(convertAngle(Math.PI - ball.getTrajectory()[0]));
-			ball.setLocation(rightPaddle.x - ball.getDiameter(), ball.y);
-			if (rightPaddle.getDirections()[1] == -1)
-				ball.setSpeed(ball.getTrajectory()[1] / 2 + (rightPaddle.getSpeeds()[0] * 2 * rightPaddle.getMass()
-						/ (rightPaddle.getMass() + ball.getMass())
-						+ ball.getTrajectory()[1] * (rightPaddle.getMass() - ball.getMass())
-								/ (rightPaddle.getMass() + ball.getMass()))
-						* 2);
-			hitPaddle.play();
-			rightPaddle.setDirection(0, 0);
-			leftPaddle.setDirection(0, 0);
-			rightPaddle.setHorizontalSpeed(0);
-			rightPaddle.setVerticalSpeed(0);
-			leftPaddle.setHorizontalSpeed(0);
-			leftPaddle.setVerticalSpeed(0);
-		}
-		if (ball.intersects(leftPaddle)) {
-			ball.setAngle(convertAngle(Math.PI - ball.getTrajectory()[0]));
-			ball.setLocation(leftPaddle.x + 2, ball.y);
-			if (leftPaddle.getDirections()[1] == 1)
-				ball.setSpeed(ball.getTrajectory()[1] / 2 + (leftPaddle.getSpeeds()[0] * 2 * leftPaddle.getMass()
-						/ (leftPaddle.getMass() + ball.getMass())
-						+ ball.getTrajectory()[1] * (leftPaddle.getMass() - ball.getMass())
-								/ (leftPaddle.getMass() + ball.getMass()))
-						* 2);
-			hitPaddle.play();
-			rightPaddle.setDirection(0, 0);
-			leftPaddle.setDirection(0, 0);
-			rightPaddle.setHorizontalSpeed(0);
-			rightPaddle.setVerticalSpeed(0);
-			leftPaddle.setHorizontalSpeed(0);
-			leftPaddle.setVerticalSpeed(0);
+	// records the match into the file named by pong.replay (last.replay unless set, nothing if empty)
+	private static void record(World world) {
+		String file = System.getProperty("pong.replay", "last.replay");
+		if (file.isEmpty())
+			return;
+		try {
+			world.record(new ReplayWriter(file, world.getSeed()));
+		} catch (IOException e) {
+			System.out.println("Couldn't record this match to " + file + ": " + e.getMessage());
 		}
+	}
 
-		// ball & border collisions
-		if (ball.y < 0) {
-			ball.y = 0;
-			ball.setAngle(convertAngle(-ball.getTrajectory()[0]));
-			ball.setLocation((int) ball.getCoordinates()[0], 0);
-			hitWall.play();
-		}
-		if (ball.y > GAME_HEIGHT - ball.getDiameter()) {
-			ball.y = GAME_HEIGHT - ball.getDiameter();
-			ball.setAngle(convertAngle(-ball.getTrajectory()[0]));
-			ball.setLocation((int) ball.getCoordinates()[0], GAME_HEIGHT - ball.getDiameter());
-			hitWall.play();
-		}
-		if (ball.x < -2) {
-			ball.x = 0;
-			ball.setLocation(0, (int) ball.getCoordinates()[1]);
-			ball.setSpeed(0);
-			rightScore.value++;
-			if (rightScore.value > 9) {
-				disable = true;
-				won = 1;
-				winningMusic.play();
-			} else {
-				disable = true;
-				newRound = true;
-				scored.play();
-			}
-		}
-		if (ball.x + ball.getDiameter() > GAME_WIDTH + 2) {
-			ball.x = GAME_WIDTH - ball.getDiameter();
-			ball.setLocation(GAME_WIDTH - ball.getDiameter(), (int) ball.getCoordinates()[1]);
-			ball.setSpeed(0);
-			leftScore.value++;
-			if (leftScore.value > 9) {
-				disable = true;
-				won = -1;
-				winningMusic.play();
-			} else {
-				disable = true;
-				newRound = true;
-				scored.play();
-			}
+	// opens the snapshots in the file named by pong.snapshot (last.snapshot unless set, nothing if empty)
+	private static SnapshotRing openSnapshots() {
+		String file = System.getProperty("pong.snapshot", "last.snapshot");
+		if (file.isEmpty())
+			return null;
+		try {
+			return new SnapshotRing(file, 4);
+		} catch (IOException e) {
+			System.out.println("Couldn't keep snapshots of this match in " + file + ": " + e.getMessage());
+			return null;
 		}
+	}
 
-		// right paddle and border collisions
-		if (rightPaddle.getCoords()[0][0] <= GAME_WIDTH - paddleBorder) {
-			rightPaddle.setHorizontalPosition(GAME_WIDTH - paddleBorder);
-		}
-		if (rightPaddle.getCoords()[1][0] >= GAME_WIDTH) {
-			rightPaddle.setHorizontalPosition(GAME_WIDTH - 2);
-		}
-		if (rightPaddle.getCoords()[3][1] >= GAME_HEIGHT) {
-			rightPaddle.setVerticalPosition(GAME_HEIGHT - rightPaddle.getLength());
-		}
-		if (rightPaddle.getCoords()[0][1] <= 0) {
-			rightPaddle.setVerticalPosition(0);
+	// starts broadcasting the match on the port in pong.broadcast, if it is set
+	private static BroadcastServer openBroadcast() {
+		Integer port = Integer.getInteger("pong.broadcast");
+		if (port == null)
+			return null;
+		try {
+			BroadcastServer server = new BroadcastServer(port);
+			server.start();
+			System.out.println("Broadcasting the match on port " + server.getPort());
+			return server;
+		} catch (IOException e) {
+			System.out.println("Couldn't broadcast the match on port " + port + ": " + e.getMessage());
+			return null;
 		}
+	}
 
-		// left paddle and border collisions
-		if (leftPaddle.getCoords()[0][0] <= 0) {
-			leftPaddle.setHorizontalPosition(0);
-		}
-		if (leftPaddle.getCoords()[1][0] >= paddleBorder) {
-			leftPaddle.setHorizontalPosition(paddleBorder - 2);
-		}
-		if (leftPaddle.getCoords()[3][1] >= GAME_HEIGHT) {
-			leftPaddle.setVerticalPosition(GAME_HEIGHT - leftPaddle.getLength());
-		}
-		if (leftPaddle.getCoords()[0][1] <= 0) {
-			leftPaddle.setVerticalPosition(0);
+	// sets up a match that carried on from a snapshot: nobody is holding a key any more,
+	// and randomised mode gets its music back
+	private void resumed() {
+		for (int key : new int[] { Paddle.UP, Paddle.DOWN, Paddle.LEFT, Paddle.RIGHT }) {
+			world.release(false, key);
+			world.release(true, key);
 		}
+		if (world.isRandomised())
+			randomisedMusic.loop();
+		System.out.println("Carrying on the last match, " + world.getScore(false).value + " : "
+				+ world.getScore(true).value);
 	}
 
-	// returns angles in [0, 2pi] radian format
-	public double convertAngle(double angle) {
-		return (angle + 2 * Math.PI) % (2 * Math.PI);
+	// writes a snapshot every snapshotTicks ticks, and straight away when someone scored in the last tick
+	private void snapshot(int events) {
+		if (++ticksSinceSnapshot >= snapshotTicks || (events & (World.SCORED | World.WON)) != 0)
+			saveSnapshot();
 	}
 
-	// run() method is what makes the game continue running without end. It calls
-	// other methods to move objects, check for collision, and update the screen
-	public void run() {
-		// the CPU runs our game code too quickly - we need to slow it down! The
-		// following lines of code "force" the computer to get stuck in a loop for short
-		// intervals between calling other methods to update the screen.
-		long lastTime = System.nanoTime();
-		double amountOfTicks = 60;
-		double ns = 1000000000 / amountOfTicks;
-		double delta = 0;
-		long now;
-
-		while (true) { // this is the infinite game loop
-			now = System.nanoTime();
-			delta = delta + (now - lastTime) / ns;
-			lastTime = now;
-
-			// only move objects around and update screen if enough time has passed
-			if (delta >= 1) {
-				if (won == 0) {
-					move();
-					checkCollision();
-				}
-				repaint();
-				delta--;
-
-				// constant friction
-				if (ball.getTrajectory()[1] - friction >= 0)
-					ball.setSpeed(ball.getTrajectory()[1] - friction);
-
-				// if the ball is still, then make it a tie and reset
-				else {
-					ball.setSpeed(0);
-					if (ball.x > paddleBorder && ball.x + ball.getDiameter() < GAME_WIDTH - paddleBorder) {
-						stuck = true;
-						disable = true;
-					}
+	// writes a snapshot of the match now (if they're being kept)
+	private void saveSnapshot() {
+		if (snapshots == null)
+			return;
+		snapshots.write(world);
+		ticksSinceSnapshot = 0;
+	}
+
+	// hands a copy of the world over to whoever draws it; moved is whether things got where they are by
+	// moving from where the last state had them (so frames in between can show them on the way)
+	private void publish(boolean moved) {
+		RenderState state = states.back();
+		state.copyFrom(world, moved && world.getRound() == publishedRound ? published : null);
+		states.publish();
+		published = state; // only read from here on, by both threads
+		publishedRound = world.getRound();
+		if (broadcast != null)
+			broadcast.publish(world, ++broadcastTick);
+	}
+
+	// gets the current frame onto the screen: the parts that changed are drawn into the
+	// off screen image, then copied straight to the window from this thread if it supports
+	// active rendering, otherwise handed to Swing through repaint() (just those parts, either way)
+	private void present() {
+		if (!isDisplayable())
+			return; // no window (yet), nothing to draw on
+		Window window = SwingUtilities.getWindowAncestor(this);
+		long start = System.nanoTime();
+		double fraction = scheduler.getTickFraction();
+		synchronized (renderLock) {
+			tickFraction = fraction;
+			updateImage(redrawAll);
+			redrawAll = false;
+			if (!(window instanceof GameFrame) || !((GameFrame) window).present(this)) {
+				for (int i = 0; i < dirty.getCount(); i++) {
+					Rectangle r = dirty.get(i);
+					repaint(r.x, r.y, r.width, r.height);
 				}
 			}
+			dirty.clear();
 		}
+		stats.frame(start, System.nanoTime());
+		Main.firstFrame();
 	}
 
-	// keypresses get sent here, WASD for left paddle, arrow keys for right paddle,
-	// r to toggle randomisation, n for next round
+	// plays the sound effects for whatever happened during the last tick
+	// (the effects only get queued for the mixer, so this never holds up the tick)
+	private void playSounds(int events) {
+		if ((events & World.HIT_PADDLE) != 0)
+			effects.play(hitPaddle, 1);
+		if ((events & World.HIT_WALL) != 0)
+			effects.play(hitWall, 0.1f);
+		if ((events & World.WON) != 0)
+			winningMusic.play();
+		else if ((events & World.SCORED) != 0)
+			effects.play(scored, 1);
+	}
+
+	// Summary of how much of the screen each frame drew again, and how often the background changed
+	public String renderReport() {
+		return String.format(
+				"Dirty regions: %d frames, %.1f%% of the screen redrawn per frame on average, background drawn %d times",
+				frames, frames == 0 ? 0 : 100.0 * dirtyPixels / frames / (GAME_WIDTH * GAME_HEIGHT),
+				renderer.getBackgroundBuilds());
+	}
+
+	// Getter function, returns the ring key events travel through
+	public InputRing getInput() {
+		return input;
+	}
+
+	// Getter function, returns the timings of this panel's game loop
+	public LoopStats getStats() {
+		return stats;
+	}
+
+	// Getter function, returns the server broadcasting the match, or null if it isn't
+	public BroadcastServer getBroadcast() {
+		return broadcast;
+	}
+
+	// Getter function, returns the scheduler pacing this panel's game loop
+	public FrameScheduler getScheduler() {
+		return scheduler;
+	}
+
+	// keypresses get sent here (on the EDT), and are passed on to the game thread
 	public void keyPressed(KeyEvent e) {
-		if (won != 0 && e.getKeyChar() == 'n') {
-			background.stop();
-			if (randomise) randomisedMusic.stop();
-			Main.game.dispose();
-			try {
-				Main.game = new GameFrame(true);
-			} catch (Exception e1) {
-				System.out.println(
-						"Sorry, something happened (honestly I'd be surprised if you got this message unless you deleted a file somewhere)!");
-			}
-			reset();
-			randomise = false;
-			won = 0;
-			disable = false;
-			stuck = false;
+		input.add(e.getKeyCode(), e.getKeyChar(), true);
+		scheduler.wake();
+	}
+
+	// keyreleases get sent here (on the EDT), and are passed on to the game thread
+	public void keyReleased(KeyEvent e) {
+		input.add(e.getKeyCode(), e.getKeyChar(), false);
+		scheduler.wake();
+	}
+
+	// applies every key event that came in since last time, on the game thread
+	private void handleInput() {
+		while (input.poll()) {
+			if (input.isPressed())
+				pressed(input.getKeyCode(), input.getKeyChar());
+			else
+				released(input.getKeyCode(), input.getKeyChar());
+		}
+	}
+
+	// WASD for left paddle, arrow keys for right paddle,
+	// r to toggle randomisation, c for chaos mode, n for next round, p to pause, h to show or hide the loop timings,
+	// i to let the computer play the right paddle (pressing it again makes it harder, then hands it back)
+	// Over the network either set of keys moves our own paddle, and only n and r do anything else
+	private void pressed(int keyCode, char keyChar) {
+		if (keyChar == 'h') {
+			showStats = !showStats;
+			return;
+		}
+
+		if (session != null) {
+			if (keyChar == 'n')
+				netPresses |= NetSession.NEXT_ROUND;
+			else if (keyChar == 'r')
+				netPresses |= NetSession.TOGGLE_RANDOMISE;
+			else
+				netKeys |= Paddle.toKey(keyCode, keyChar, false) | Paddle.toKey(keyCode, keyChar, true);
+			return;
+		}
+
+		if (world.getWon() != 0 && keyChar == 'n') {
+			startNewGame();
+			return;
+		}
+
+		if (keyChar == 'p') {
+			setPaused(!paused);
+			return;
 		}
 
-		if (e.getKeyChar() == 'r') {
-			randomise = !randomise;
-			if (randomise) randomisedMusic.loop();
+		if (keyChar == 'r') {
+			world.toggleRandomise();
+			if (world.isRandomised()) randomisedMusic.loop();
 			else randomisedMusic.stop();
 			return;
 		}
 
-		if (e.getKeyChar() == 'n') {
-			reset();
-			stuck = false;
-			disable = false;
-			newRound = false;
+		if (keyChar == 'i') {
+			if (ai == null)
+				ai = new AiController(AiController.EASY, world.getSeed());
+			else if (ai.getDifficulty() < AiController.PERFECT)
+				ai.setDifficulty(ai.getDifficulty() + 1);
+			else {
+				ai = null;
+				world.release(true, Paddle.UP);
+				world.release(true, Paddle.DOWN);
+				world.release(true, Paddle.LEFT);
+				world.release(true, Paddle.RIGHT);
+			}
 			return;
 		}
 
-		if (!disable) {
-			Set<Character> temp = new HashSet<>(Arrays.asList(new Character[] { 'w', 'a', 's', 'd' }));
-			if (temp.contains(e.getKeyChar()))
-				leftPaddle.keyPressed(e);
-			else
-				rightPaddle.keyPressed(e);
+		if (keyChar == 'c') {
+			world.toggleChaos();
+			return;
+		}
+
+		if (keyChar == 'n') {
+			world.nextRound();
+			return;
 		}
+
+		boolean rightPlayer = !isLeftPlayerKey(keyChar);
+		world.press(rightPlayer, Paddle.toKey(keyCode, keyChar, rightPlayer));
 	}
 
-	// keyreleases get sent here
-	public void keyReleased(KeyEvent e) {
-		Set<Character> temp = new HashSet<>(Arrays.asList(new Character[] { 'w', 'a', 's', 'd' }));
-		if (temp.contains(e.getKeyChar()))
-			leftPaddle.keyReleased(e);
-		else
-			rightPaddle.keyReleased(e);
+	// lets go of whichever paddle key was released
+	private void released(int keyCode, char keyChar) {
+		if (session != null) {
+			netKeys &= ~(Paddle.toKey(keyCode, keyChar, false) | Paddle.toKey(keyCode, keyChar, true));
+			return;
+		}
+		boolean rightPlayer = !isLeftPlayerKey(keyChar);
+		world.release(rightPlayer, Paddle.toKey(keyCode, keyChar, rightPlayer));
+	}
+
+	// true for the keys that belong to the left paddle (WASD)
+	private static boolean isLeftPlayerKey(char key) {
+		return key == 'w' || key == 'a' || key == 's' || key == 'd';
 	}
 
 	// left empty because we don't need it; must be here because it is required to
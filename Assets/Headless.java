@@ -0,0 +1,49 @@
+/* Headless class plays whole matches with no window, no sound and no waiting between ticks
+ * Both paddles are driven by TrackingControllers and every tick runs as fast as the CPU allows.
+ * Match i is started from seed + i, so any one of them can be played again exactly.
+ * Usage: java Headless [matches] [seed]
+ */
+
+public class Headless {
+
+	// a match that goes on longer than this (ten minutes of game time) is given up on
+	private static final long maxTicks = 60L * 60 * 10;
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+		Controller left = new TrackingController(0.7, seed);
+		Controller right = new TrackingController(0.7, seed + 1);
+		long ticks = 0;
+		int leftWins = 0, rightWins = 0, unfinished = 0;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < matches; i++) {
+			World world = new World(seed + i);
+			long matchTicks = 0;
+			while (world.getWon() == 0 && matchTicks < maxTicks) {
+				// nobody needs to press n here, just carry straight on
+				if (world.isStuck() || world.isNewRound())
+					world.nextRound();
+				left.update(world, false);
+				right.update(world, true);
+				world.tick();
+				matchTicks++;
+			}
+			ticks += matchTicks;
+			if (world.getWon() == 1)
+				rightWins++;
+			else if (world.getWon() == -1)
+				leftWins++;
+			else
+				unfinished++;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("Simulated %d matches (%d ticks) in %.2f s: %.0f matches/s, %.0f ticks/s%n", matches, ticks,
+				seconds, matches / seconds, ticks / seconds);
+		System.out.printf("Left won %d, right won %d, %d unfinished%n", leftWins, rightWins, unfinished);
+	}
+}
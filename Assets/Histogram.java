@@ -0,0 +1,58 @@
+/* Histogram class counts values into power-of-two buckets
+ * Recording is a couple of bit operations and an array increment, cheap enough to do every tick.
+ * Percentiles come out as the top of the bucket they land in, so they are at most 2x too high.
+ * Written by one thread; other threads may read it, they just might see it slightly out of date.
+ */
+
+public class Histogram {
+
+	// bucket i holds values from 2^(i-1) up to 2^i - 1 (bucket 0 holds 0 and anything negative)
+	private final long[] buckets = new long[64];
+	private long count, total, max;
+
+	// adds a value
+	public void record(long value) {
+		int bucket = value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+		buckets[Math.min(bucket, 63)]++;
+		count++;
+		total += value;
+		if (value > max)
+			max = value;
+	}
+
+	// adds every value recorded in another histogram
+	public void add(Histogram other) {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] += other.buckets[i];
+		count += other.count;
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+
+	// Getter function, returns roughly the value that the given fraction (0 to 1) of values are below
+	public long percentile(double fraction) {
+		long target = (long) Math.ceil(count * fraction);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= target && seen > 0)
+				return Math.min(i == 0 ? 0 : (1L << i) - 1, max);
+		}
+		return max;
+	}
+
+	// Getter function, returns how many values have been recorded
+	public long getCount() {
+		return count;
+	}
+
+	// Getter function, returns the average value
+	public double getMean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	// Getter function, returns the largest value
+	public long getMax() {
+		return max;
+	}
+}
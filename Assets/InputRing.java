@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/* InputRing class carries key events from the EDT to the game thread
+ * A fixed size single-producer single-consumer ring of primitives: each slot holds the key code,
+ * key character, whether it was a press or a release, and the System.nanoTime() it was put in.
+ * Nothing is allocated, nothing locks, and the game thread reads everything at the start of a tick.
+ * It also measures how long events sit in the ring before the simulation gets to them.
+ */
+
+public class InputRing {
+
+	// number of slots, must be a power of two
+	private static final int size = 256;
+
+	// In order: code, character and press bit packed together, the time each event came in
+	private final long[] events = new long[size];
+	private final long[] times = new long[size];
+
+	// head is the next slot to read (only the consumer moves it), tail the next to write (only the producer)
+	private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+	// In order: events dropped because the ring was full (producer side)
+	// In order: events read, total and worst time spent waiting, events that waited longer than a tick (consumer side)
+	private volatile long dropped;
+	private long consumed, totalLatency, maxLatency, lateEvents;
+
+	// the event being read, filled in by poll()
+	private int keyCode;
+	private char keyChar;
+	private boolean pressed;
+
+	// Producer: adds an event, or drops it if the game thread has fallen 256 events behind
+	public void add(int keyCode, char keyChar, boolean pressed) {
+		long slot = tail.get();
+		if (slot - head.get() >= size) {
+			dropped++;
+			return;
+		}
+		int index = (int) (slot & (size - 1));
+		events[index] = (keyCode & 0xffffffffL) | ((long) keyChar << 32) | (pressed ? 1L << 48 : 0);
+		times[index] = System.nanoTime();
+		tail.lazySet(slot + 1);
+	}
+
+	// Consumer: moves on to the next event, returns false if there isn't one
+	// The event's details are then available from getKeyCode(), getKeyChar() and isPressed()
+	public boolean poll() {
+		long slot = head.get();
+		if (slot >= tail.get())
+			return false;
+		int index = (int) (slot & (size - 1));
+		long event = events[index];
+		long latency = System.nanoTime() - times[index];
+		head.lazySet(slot + 1);
+
+		keyCode = (int) event;
+		keyChar = (char) (event >>> 32);
+		pressed = (event & (1L << 48)) != 0;
+
+		consumed++;
+		totalLatency += latency;
+		if (latency > maxLatency)
+			maxLatency = latency;
+		if (latency > FrameScheduler.TICK_NANOS)
+			lateEvents++;
+		return true;
+	}
+
+	// Getter function, returns the key code of the event from poll()
+	public int getKeyCode() {
+		return keyCode;
+	}
+
+	// Getter function, returns the key character of the event from poll()
+	public char getKeyChar() {
+		return keyChar;
+	}
+
+	// Getter function, returns whether the event from poll() was a press (otherwise it was a release)
+	public boolean isPressed() {
+		return pressed;
+	}
+
+	// Summary of how quickly input reached the simulation
+	public String report() {
+		return String.format("Input: %d events, latency avg %.3f ms, max %.3f ms, %d took longer than a tick, %d dropped",
+				consumed, consumed == 0 ? 0 : totalLatency / 1e6 / consumed, maxLatency / 1e6, lateEvents, dropped);
+	}
+}
@@ -0,0 +1,24 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/* LateFrameEvent is a JFR event for a frame that reached the screen well after the one before it
+ * Shows up in a flight recording under Pong, next to the GC and thread events around it
+ */
+
+@Name("pong.LateFrame")
+@Label("Late Frame")
+@Category("Pong")
+@Description("A frame drawn more than one and a half ticks after the previous one")
+public class LateFrameEvent extends jdk.jfr.Event {
+
+	@Label("Frame Interval")
+	@Timespan(Timespan.NANOSECONDS)
+	public long interval;
+
+	@Label("Render Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long renderTime;
+}
@@ -0,0 +1,95 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/* LifecycleCheck class plays match after match on one GamePanel and checks nothing builds up
+ * Every match used to leave its game thread behind, so each one cost another thread and more CPU.
+ * Now one thread plays them all: the number of threads and the CPU used per second of play should stay
+ * where they settle once the JIT has warmed up, and stop() should leave no game thread behind.
+ * Runs without a window (the panel is never shown) and exits with 1 if anything grew.
+ * Usage: java LifecycleCheck [matches] [milliseconds per match]
+ */
+
+public class LifecycleCheck {
+
+	// matches played first while the JIT warms up (they use more CPU and don't count)
+	private static final int warmup = 1;
+	// how many matches' median is compared, the ones after the warm up with the last ones (a median, so
+	// that one match where the JIT compiled something big doesn't look like anything built up)
+	private static final int compared = 3;
+	// most the CPU used (fraction of one core) may go up by between them
+	private static final double cpuSlack = 0.05;
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		System.setProperty("pong.replay", "");
+		System.setProperty("pong.snapshot", "");
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+		if (matches < warmup + compared + 1) {
+			System.out.printf("Needs at least %d matches to tell%n", warmup + compared + 1);
+			System.exit(1);
+		}
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		int before = threads.getThreadCount();
+
+		GamePanel panel = new GamePanel();
+		int[] counts = new int[matches];
+		double[] loads = new double[matches];
+		for (int i = 0; i < matches; i++) {
+			if (i > 0)
+				panel.newGame();
+			if (i % 4 == 3) {
+				// a pause in the middle shouldn't cost anything either
+				panel.setPaused(true);
+				Thread.sleep(millis / 4);
+				panel.setPaused(false);
+			}
+			long cpu = cpuTime(threads), start = System.nanoTime();
+			Thread.sleep(millis);
+			loads[i] = (double) (cpuTime(threads) - cpu) / (System.nanoTime() - start);
+			counts[i] = threads.getThreadCount();
+			System.out.printf("Match %d: %d threads, cpu %.1f%% of one core%s%n", i + 1, counts[i], loads[i] * 100,
+					i < warmup ? " (warming up)" : "");
+		}
+		int firstThreads = counts[warmup], lastThreads = counts[matches - 1];
+		double firstCpu = median(loads, warmup), lastCpu = median(loads, matches - compared);
+		boolean grew = lastThreads > firstThreads || lastCpu > firstCpu + cpuSlack;
+
+		panel.stop();
+		Thread.sleep(100);
+		int after = threads.getThreadCount();
+		boolean stopped = true;
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			if (thread.getName().equals("Game loop"))
+				stopped = false;
+		System.out.printf("%d threads before the panel, %d while playing (%d by the end), %d after stop(), game thread %s%n",
+				before, firstThreads, lastThreads, after, stopped ? "gone" : "STILL RUNNING");
+		System.out.printf("cpu %.1f%% of one core to start with, %.1f%% by the end (medians of %d matches)%n",
+				firstCpu * 100, lastCpu * 100, compared);
+		System.out.println(panel.getScheduler().report());
+		if (grew || !stopped) {
+			System.out.println("Something built up from one match to the next");
+			System.exit(1);
+		}
+		System.out.println("Flat");
+	}
+
+	// the median of compared loads from from on
+	private static double median(double[] loads, int from) {
+		double[] sorted = Arrays.copyOfRange(loads, from, from + compared);
+		Arrays.sort(sorted);
+		return sorted[compared / 2];
+	}
+
+	// CPU used so far by every thread in the program, in nanoseconds
+	private static long cpuTime(ThreadMXBean threads) {
+		long total = 0;
+		for (long id : threads.getAllThreadIds()) {
+			long time = threads.getThreadCpuTime(id);
+			if (time > 0)
+				total += time;
+		}
+		return total;
+	}
+}
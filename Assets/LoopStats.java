@@ -0,0 +1,110 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/* LoopStats class keeps track of how long the game loop spends on everything
+ * Histograms of tick time, render time, time between frames and ticks run per pass of the loop,
+ * an overlay that shows them on top of the game (press h), and JFR events for slow ticks and
+ * late frames so hitches can be lined up with GC and everything else in a flight recording.
+ */
+
+public class LoopStats {
+
+	// size of the overlay in the top left corner
+	public static final int OVERLAY_WIDTH = 175, OVERLAY_HEIGHT = 62;
+
+	// In order: a tick taking longer than this is slow, frames further apart than this are late
+	private static final long slowTick = 2000000L;
+	private static final long lateFrame = FrameScheduler.TICK_NANOS * 3 / 2;
+
+	// In order: time per tick, time per frame drawn, time between frames, ticks per pass of the loop
+	private final Histogram tickTime = new Histogram(), renderTime = new Histogram(),
+			frameInterval = new Histogram(), ticksPerPass = new Histogram();
+
+	// In order: ticks so far, when the last frame finished (0 after the loop has been idle)
+	private long ticks;
+	private volatile long lastFrame;
+
+	// Called by the game loop after every tick
+	public void tick(long duration, int events) {
+		tickTime.record(duration);
+		ticks++;
+		if (duration > slowTick) {
+			SlowTickEvent event = new SlowTickEvent();
+			if (event.isEnabled()) {
+				event.tickTime = duration;
+				event.tick = ticks;
+				event.events = events;
+				event.commit();
+			}
+		}
+	}
+
+	// Called by the game loop once per pass, with the number of ticks it ran
+	public void pass(int ticks) {
+		ticksPerPass.record(ticks);
+	}
+
+	// Called whenever a frame has been drawn, with when drawing started and finished
+	public void frame(long start, long end) {
+		renderTime.record(end - start);
+		long last = lastFrame;
+		if (last != 0) {
+			long interval = end - last;
+			frameInterval.record(interval);
+			if (interval > lateFrame) {
+				LateFrameEvent event = new LateFrameEvent();
+				if (event.isEnabled()) {
+					event.interval = interval;
+					event.renderTime = end - start;
+					event.commit();
+				}
+			}
+		}
+		lastFrame = end;
+	}
+
+	// Called when the loop goes idle, so the wait doesn't count as one very late frame
+	public void pause() {
+		lastFrame = 0;
+	}
+
+	// draws the overlay in the top left corner
+	public void draw(Graphics g) {
+		long collections = 0, collectionTime = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collections += Math.max(0, bean.getCollectionCount());
+			collectionTime += Math.max(0, bean.getCollectionTime());
+		}
+
+		g.setColor(new Color(0, 0, 0, 180));
+		g.fillRect(0, 0, OVERLAY_WIDTH, OVERLAY_HEIGHT);
+		g.setColor(Color.green);
+		g.setFont(TextCache.SMALL);
+		g.drawString(line("tick", tickTime), 3, 11);
+		g.drawString(line("render", renderTime), 3, 23);
+		g.drawString(String.format("frame  avg %.1f p99 %.1f max %.1f ms", frameInterval.getMean() / 1e6,
+				frameInterval.percentile(0.99) / 1e6, frameInterval.getMax() / 1e6), 3, 35);
+		g.drawString(String.format("ticks/pass avg %.2f max %d", ticksPerPass.getMean(), ticksPerPass.getMax()), 3,
+				47);
+		g.drawString(String.format("gc %d collections, %d ms", collections, collectionTime), 3, 59);
+	}
+
+	// one line of the overlay: median, 99th percentile and worst time in microseconds
+	private static String line(String name, Histogram histogram) {
+		return String.format("%-6s p50 %d p99 %d max %d us", name, histogram.percentile(0.5) / 1000,
+				histogram.percentile(0.99) / 1000, histogram.getMax() / 1000);
+	}
+
+	// Summary of the whole run
+	public String report() {
+		return String.format(
+				"Loop: %d ticks, tick p50 %.3f p99 %.3f max %.3f ms, render p50 %.3f p99 %.3f max %.3f ms, "
+						+ "frame interval avg %.3f p99 %.3f max %.3f ms, ticks per pass avg %.2f max %d",
+				ticks, tickTime.percentile(0.5) / 1e6, tickTime.percentile(0.99) / 1e6, tickTime.getMax() / 1e6,
+				renderTime.percentile(0.5) / 1e6, renderTime.percentile(0.99) / 1e6, renderTime.getMax() / 1e6,
+				frameInterval.getMean() / 1e6, frameInterval.percentile(0.99) / 1e6, frameInterval.getMax() / 1e6,
+				ticksPerPass.getMean(), ticksPerPass.getMax());
+	}
+}
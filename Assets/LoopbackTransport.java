@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/* LoopbackTransport class connects two NetSessions inside the same program
+ * Pretends to be a bad network: every packet is held back for the latency plus or minus some
+ * jitter (so they can overtake each other), and some are just lost. Time comes from a Clock,
+ * so a test can run a whole match in simulated time as fast as the CPU allows.
+ * Both ends can be used from different threads.
+ */
+
+public class LoopbackTransport implements Transport {
+
+	// Where the time comes from, in nanoseconds
+	public interface Clock {
+		long nanoTime();
+	}
+
+	// the real time, for playing along in real time
+	public static final Clock SYSTEM = new Clock() {
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	// A packet on its way: when it arrives, what's in it, and the order it was sent in (to break ties)
+	private static class Packet implements Comparable<Packet> {
+		final long arrival, order;
+		final byte[] data;
+
+		Packet(long arrival, long order, byte[] data) {
+			this.arrival = arrival;
+			this.order = order;
+			this.data = data;
+		}
+
+		public int compareTo(Packet other) {
+			return arrival != other.arrival ? Long.compare(arrival, other.arrival) : Long.compare(order, other.order);
+		}
+	}
+
+	// In order: packets on their way to this end, the other end, the clock
+	private final PriorityQueue<Packet> arriving = new PriorityQueue<>();
+	private LoopbackTransport other;
+	private final Clock clock;
+
+	// In order: delay every packet gets, most extra delay either way (both in nanoseconds), chance of losing a packet
+	private final long latency, jitter;
+	private final double loss;
+	private final Random random;
+
+	// In order: packets sent, packets lost on purpose
+	private long sent, lost;
+
+	private LoopbackTransport(long latency, long jitter, double loss, long seed, Clock clock) {
+		this.latency = latency;
+		this.jitter = jitter;
+		this.loss = loss;
+		this.clock = clock;
+		random = new Random(seed);
+	}
+
+	// Returns two ends connected to each other, each way with the given latency and jitter
+	// (in milliseconds) and chance of losing a packet
+	public static LoopbackTransport[] pair(double latency, double jitter, double loss, long seed, Clock clock) {
+		LoopbackTransport a = new LoopbackTransport((long) (latency * 1e6), (long) (jitter * 1e6), loss, seed, clock);
+		LoopbackTransport b = new LoopbackTransport((long) (latency * 1e6), (long) (jitter * 1e6), loss, seed + 1,
+				clock);
+		a.other = b;
+		b.other = a;
+		return new LoopbackTransport[] { a, b };
+	}
+
+	public void send(ByteBuffer packet) {
+		byte[] data = new byte[packet.remaining()];
+		packet.get(data);
+		Packet delivery;
+		synchronized (this) {
+			sent++;
+			if (random.nextDouble() < loss) {
+				lost++;
+				return;
+			}
+			long delay = latency + (long) ((random.nextDouble() * 2 - 1) * jitter);
+			delivery = new Packet(clock.nanoTime() + Math.max(0, delay), sent, data);
+		}
+		other.arrive(delivery); // outside our lock, so two ends sending at once can't deadlock
+	}
+
+	// puts a packet on its way to this end
+	private synchronized void arrive(Packet packet) {
+		arriving.add(packet);
+	}
+
+	public synchronized boolean receive(ByteBuffer packet) {
+		Packet next = arriving.peek();
+		if (next == null || next.arrival > clock.nanoTime())
+			return false;
+		arriving.poll();
+		packet.clear();
+		packet.put(next.data);
+		packet.flip();
+		return true;
+	}
+
+	public void close() {
+	}
+
+	// Getter function, returns the number of packets lost on purpose
+	public synchronized long getLost() {
+		return lost;
+	}
+
+	// Getter function, returns the number of packets sent
+	public synchronized long getSent() {
+		return sent;
+	}
+}
@@ -1,17 +1,95 @@
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
+import javax.swing.JFrame;
 
 /* Main class
  * Only purpose is to run the GameFrame constructor
+ * (and print how the game loop performed when the program closes)
+ * For a game between two computers: java Main host <port> on one, java Main join <address> <port> on the other
+ * To let people watch, start the game with -Dpong.broadcast=<port>; they run java Main watch <address> <port>
 */
 
 class Main {
 	public static GameFrame game;
 	public static GameFrame start;
 
+	// the connection to the other computer, null when both players share this keyboard
+	public static NetSession net;
+
+	// how long to wait for the other computer to turn up, in milliseconds
+	private static final long connectTimeout = 60000;
+
+	// milliseconds from the JVM starting to the first frame on the screen (0 until then)
+	private static volatile long firstFrame;
+
 	public static void main(String[] args) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+		Runtime.getRuntime().addShutdownHook(new Thread(Main::report));
+		if (args.length > 0 && args[0].equals("watch")) {
+			watch(args);
+			return;
+		}
+		AssetCache.preload(); // the sounds get decoded while the window is being put together
+		if (args.length > 0) {
+			connect(args);
+			game = new GameFrame(true); // both computers go straight into the game
+			return;
+		}
 		start = new GameFrame(false);
 	}
+
+	// sets up net from the command line (host <port> or join <address> <port>), and waits for the other computer
+	private static void connect(String[] args) throws IOException {
+		boolean host = args[0].equals("host");
+		Transport transport = host ? new UdpTransport(Integer.parseInt(args[1]))
+				: new UdpTransport(args[1], Integer.parseInt(args[2]));
+		net = new NetSession(transport, host, Long.getLong("pong.seed", System.nanoTime()));
+		System.out.println(host ? "Waiting for someone to join on port " + args[1] + "..." : "Joining " + args[1] + "...");
+		try {
+			if (!net.connect(connectTimeout)) {
+				System.out.println("Nobody answered, giving up");
+				System.exit(1);
+			}
+		} catch (InterruptedException e) {
+			System.exit(1);
+		}
+		System.out.println("Connected, you are the " + (host ? "left" : "right") + " paddle");
+	}
+
+	// opens a window showing the match being broadcast from the address and port on the command line
+	private static void watch(String[] args) throws IOException {
+		JFrame frame = new JFrame("Modified Pong! (watching)");
+		frame.add(new SpectatorPanel(args[1], Integer.parseInt(args[2])));
+		frame.setResizable(false);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.pack();
+		frame.setVisible(true);
+		frame.setLocationRelativeTo(null);
+	}
+
+	// Called whenever a frame has been drawn, remembers how long it took to get the first one on the screen
+	public static void firstFrame() {
+		if (firstFrame == 0)
+			firstFrame = Math.max(1, System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+	}
+
+	// prints the game loop statistics of the current game, if there is one
+	private static void report() {
+		if (firstFrame != 0)
+			System.out.println("Startup: first frame " + firstFrame + " ms after the JVM started");
+		System.out.println(AssetCache.report());
+		if (game != null && game.panel != null) {
+			System.out.println(game.panel.getScheduler().report());
+			System.out.println(game.panel.getInput().report());
+			System.out.println(game.panel.getStats().report());
+			System.out.println(game.panel.renderReport());
+			if (game.panel.getBroadcast() != null)
+				System.out.println(game.panel.getBroadcast().report());
+			System.out.println(game.report());
+		}
+		if (net != null)
+			System.out.println(net.report());
+	}
 }
\ No newline at end of file
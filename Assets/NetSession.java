@@ -0,0 +1,402 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/* NetSession class lets two players on different computers play the same World
+ * Both computers run the whole game. Every tick each sends the keys its player is holding, and
+ * doesn't wait for the other player's: it guesses they are still holding whatever they held last
+ * and carries on. When the real keys turn up and the guess was wrong, it rolls back - puts the
+ * World back to how it was on that tick and runs move()/checkCollision() again from there with
+ * the right keys - so the game never waits for the network unless it gets too far ahead.
+ * The World is deterministic, so both computers end up with exactly the same game. Just in case,
+ * the host also sends snapshots of the state now and then (as a delta against the last one the
+ * other player said it got); if they don't match, the other player takes the host's and carries on.
+ * The host plays the left paddle, the other player the right one.
+ *
+ * Packets: INPUT has the last tick it covers, how many ticks of keys it carries (all the ones the
+ * other side hasn't said it has, oldest first), and the sender's acknowledgements; SNAPSHOT has a
+ * tick, the tick of the state it is a delta against (-1 for none) and the delta.
+ */
+
+public class NetSession {
+
+	// In order: packet types, extra bits in a tick's keys besides Paddle.UP, DOWN, LEFT and RIGHT
+	private static final byte HELLO = 1, WELCOME = 2, INPUT = 3, SNAPSHOT = 4;
+	public static final int NEXT_ROUND = 16, TOGGLE_RANDOMISE = 32;
+
+	// In order: ticks of keys and states kept, most ticks we run ahead of the other player's keys
+	// In order: ticks between snapshots, snapshots remembered as possible bases, biggest packet sent
+	// In order: ticks without hearing anything before the other player counts as gone
+	private static final int history = 128, maxRollback = 60;
+	private static final int snapshotInterval = 60, snapshotBases = 8, maxPacket = 1400;
+	private static final int timeoutTicks = 5 * FrameScheduler.TICKS_PER_SECOND;
+
+	// In order: the connection, whether we are the host (left player), the game
+	private final Transport transport;
+	private final boolean host;
+	private World world;
+
+	// Keys for each tick (index tick % history): ours, theirs (once known), and what we used for theirs
+	private final byte[] local = new byte[history], remote = new byte[history], used = new byte[history];
+
+	// the state before each tick was run (also indexed by tick % history)
+	private final ByteBuffer[] states = new ByteBuffer[history];
+
+	// In order: the next tick to run, the last tick we have all their keys up to,
+	// the last tick they have all our keys up to, the earliest tick that has to be run again
+	private long tick, remoteConfirmed = -1, localAcked = -1, rollbackFrom = Long.MAX_VALUE;
+
+	// keys currently held down in the World, for each paddle
+	private int leftKeys, rightKeys;
+
+	// Snapshots: ticks and states of the last few sent (host) or received (other player),
+	// the newest one the other player has acknowledged (host) or that we got (other player)
+	private final long[] baseTicks = new long[snapshotBases];
+	private final ByteBuffer[] bases = new ByteBuffer[snapshotBases];
+	private long snapshotAcked = -1, lastSnapshot = -1;
+
+	// In order: send and receive buffers, a state being decoded
+	private final ByteBuffer out = ByteBuffer.allocate(64 * 1024), in = ByteBuffer.allocate(64 * 1024);
+	private final ByteBuffer scratch = ByteBuffer.allocate(WorldCodec.MAX_STATE);
+
+	// Statistics: bytes and packets each way, rollbacks and the ticks they ran again, deepest rollback,
+	// ticks spent waiting for the other player, snapshots sent, received and too big to send,
+	// bytes of snapshots sent, times we had to take the host's state, broken packets, tick we last heard anything
+	private long bytesSent, bytesReceived, packetsSent, packetsReceived, rollbacks, rollbackTicks, maxDepth, stalls,
+			snapshotsSent, snapshotsReceived, snapshotsSkipped, snapshotBytes, resyncs, badPackets, lastHeard;
+
+	// Constructor, accepts the connection, whether we host (and play left), and the seed of the game
+	// (the other player's seed is replaced by the host's when connect() is used)
+	public NetSession(Transport transport, boolean host, long seed) {
+		this.transport = transport;
+		this.host = host;
+		world = new World(seed);
+		for (int i = 0; i < history; i++)
+			states[i] = ByteBuffer.allocate(WorldCodec.MAX_STATE);
+		for (int i = 0; i < snapshotBases; i++) {
+			bases[i] = ByteBuffer.allocate(WorldCodec.MAX_STATE);
+			baseTicks[i] = -1;
+		}
+	}
+
+	// Waits for the other player to turn up: the host waits for a HELLO and answers with the seed,
+	// the other player keeps saying HELLO until it gets one. Returns false if nobody came in time.
+	public boolean connect(long timeoutMillis) throws IOException, InterruptedException {
+		long giveUp = System.currentTimeMillis() + timeoutMillis;
+		while (System.currentTimeMillis() < giveUp) {
+			if (!host) {
+				out.clear();
+				out.put(HELLO);
+				send();
+			}
+			while (transport.receive(in)) {
+				byte type = in.get();
+				if (host && type == HELLO) {
+					welcome();
+					return true;
+				}
+				if (!host && type == WELCOME) {
+					world = new World(in.getLong());
+					return true;
+				}
+			}
+			Thread.sleep(host ? 10 : 100);
+		}
+		return false;
+	}
+
+	// tells the other player which game we are playing
+	private void welcome() throws IOException {
+		out.clear();
+		out.put(WELCOME);
+		out.putLong(world.getSeed());
+		send();
+	}
+
+	// Runs the next tick with our player holding keys (Paddle keys plus NEXT_ROUND or TOGGLE_RANDOMISE),
+	// after rolling back for any of the other player's keys that turned up since last time.
+	// Returns false if we are too far ahead of the other player and have to wait (nothing was run).
+	public boolean tick(int keys) throws IOException {
+		receive();
+		if (rollbackFrom < tick)
+			rollback();
+		if (tick - remoteConfirmed > maxRollback) {
+			stalls++;
+			sendInputs(tick - 1);
+			return false;
+		}
+
+		local[slot(tick)] = (byte) keys;
+		sendInputs(tick);
+		run(tick);
+		tick++;
+		if (host)
+			sendSnapshot();
+		return true;
+	}
+
+	// Takes in whatever has arrived and rolls back for it, without running a new tick
+	// (for while the game is held up, so the other player still hears from us)
+	public void update() throws IOException {
+		receive();
+		if (rollbackFrom < tick)
+			rollback();
+		sendInputs(tick - 1);
+	}
+
+	// runs tick t: saves the state before it, applies both players' keys, and steps the world
+	private void run(long t) {
+		int slot = slot(t);
+		WorldCodec.encode(world, leftKeys, rightKeys, states[slot]);
+
+		// their keys if we have them, otherwise the last ones we had (minus one-off presses)
+		int theirs;
+		if (t <= remoteConfirmed)
+			theirs = remote[slot];
+		else
+			theirs = remoteConfirmed < 0 ? 0 : remote[slot(remoteConfirmed)] & 15;
+		used[slot] = (byte) theirs;
+
+		apply(false, host ? local[slot] : theirs);
+		apply(true, host ? theirs : local[slot]);
+		if (!world.isWaiting())
+			world.tick();
+	}
+
+	// presses and releases a player's paddle keys to match what they are holding this tick
+	// (held keys are pressed again every tick, the way a held key repeats), then any one-off presses
+	private void apply(boolean rightPlayer, int keys) {
+		int held = rightPlayer ? rightKeys : leftKeys;
+		for (int key = Paddle.UP; key <= Paddle.RIGHT; key <<= 1) {
+			if ((keys & key) != 0)
+				world.press(rightPlayer, key);
+			else if ((held & key) != 0)
+				world.release(rightPlayer, key);
+		}
+		if (rightPlayer)
+			rightKeys = keys & 15;
+		else
+			leftKeys = keys & 15;
+
+		if ((keys & NEXT_ROUND) != 0) {
+			if (world.getWon() != 0) {
+				// a new game straight away, on both computers
+				world.endGame();
+				world.getScore(false).value = 0;
+				world.getScore(true).value = 0;
+			} else
+				world.nextRound();
+		}
+		if ((keys & TOGGLE_RANDOMISE) != 0)
+			world.toggleRandomise();
+	}
+
+	// puts the world back to before the earliest tick that was run with the wrong keys, and runs everything since again
+	private void rollback() {
+		long from = rollbackFrom;
+		rollbackFrom = Long.MAX_VALUE;
+		int keys = WorldCodec.decode(world, states[slot(from)]);
+		leftKeys = keys & 0xff;
+		rightKeys = keys >>> 8;
+		for (long t = from; t < tick; t++)
+			run(t);
+		rollbacks++;
+		rollbackTicks += tick - from;
+		maxDepth = Math.max(maxDepth, tick - from);
+	}
+
+	// reads every packet that has arrived
+	private void receive() throws IOException {
+		while (transport.receive(in)) {
+			packetsReceived++;
+			bytesReceived += in.remaining();
+			lastHeard = tick;
+			try {
+				byte type = in.get();
+				if (type == INPUT)
+					readInputs();
+				else if (type == SNAPSHOT && !host)
+					readSnapshot();
+				else if (type == HELLO && host)
+					welcome(); // our WELCOME got lost, send it again
+			} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+				badPackets++;
+			}
+		}
+	}
+
+	// takes in the other player's keys, and works out how far back we have to go for them
+	private void readInputs() {
+		long last = in.getInt();
+		int count = in.get() & 0xff;
+		long acked = in.getInt();
+		long snapshot = in.getInt();
+		localAcked = Math.max(localAcked, acked);
+		if (host)
+			snapshotAcked = Math.max(snapshotAcked, snapshot);
+
+		long first = last - count + 1;
+		if (first > remoteConfirmed + 1 || last <= remoteConfirmed)
+			return; // a gap we can't fill yet, or nothing new
+		for (long t = first; t <= last; t++) {
+			byte keys = in.get();
+			if (t <= remoteConfirmed)
+				continue;
+			remote[slot(t)] = keys;
+			if (t < tick && keys != used[slot(t)])
+				rollbackFrom = Math.min(rollbackFrom, t); // we guessed wrong, go back and run it again
+		}
+		remoteConfirmed = last;
+	}
+
+	// sends our keys for every tick up to last the other player hasn't acknowledged yet
+	private void sendInputs(long last) throws IOException {
+		if (last < 0)
+			return;
+		int count = (int) Math.min(last - localAcked, Math.min(history, 255));
+		out.clear();
+		out.put(INPUT);
+		out.putInt((int) last);
+		out.put((byte) count);
+		out.putInt((int) remoteConfirmed);
+		out.putInt((int) (host ? -1 : snapshotAcked));
+		for (long t = last - count + 1; t <= last; t++)
+			out.put(local[slot(t)]);
+		send();
+	}
+
+	// every snapshotInterval ticks, sends the other player the newest state that can't change any more
+	// (the state before the first tick we haven't got their keys for)
+	private void sendSnapshot() throws IOException {
+		long t = remoteConfirmed + 1;
+		if (t >= tick || t - lastSnapshot < snapshotInterval)
+			return;
+		lastSnapshot = t;
+		ByteBuffer state = states[slot(t)];
+
+		// a delta against the newest snapshot they have, or the whole thing if they have none
+		ByteBuffer base = null;
+		long baseTick = -1;
+		for (int i = 0; i < snapshotBases; i++)
+			if (baseTicks[i] == snapshotAcked && snapshotAcked >= 0) {
+				base = bases[i];
+				baseTick = snapshotAcked;
+			}
+		out.clear();
+		out.put(SNAPSHOT);
+		out.putInt((int) t);
+		out.putInt((int) baseTick);
+		WorldCodec.delta(base, state, out);
+		if (out.position() > maxPacket) {
+			snapshotsSkipped++; // chaos mode makes for states too big for a packet; rollback still keeps us in step
+			return;
+		}
+
+		// remember it, in case they acknowledge it and it becomes the next base
+		int slot = (int) (snapshotsSent % snapshotBases);
+		bases[slot].clear();
+		bases[slot].put(state.duplicate());
+		bases[slot].flip();
+		baseTicks[slot] = t;
+		snapshotsSent++;
+		snapshotBytes += out.position();
+		send();
+	}
+
+	// takes in one of the host's snapshots, and if our state for that tick is different, takes theirs
+	private void readSnapshot() {
+		long t = in.getInt(), baseTick = in.getInt();
+		ByteBuffer base = null;
+		if (baseTick >= 0) {
+			for (int i = 0; i < snapshotBases; i++)
+				if (baseTicks[i] == baseTick)
+					base = bases[i];
+			if (base == null)
+				return; // against one we've already forgotten; the host will move on to a newer base
+		}
+		WorldCodec.undelta(base, in, scratch);
+		snapshotsReceived++;
+
+		// keep it as a possible base, and tell the host we have it
+		int slot = (int) (snapshotsReceived % snapshotBases);
+		bases[slot].clear();
+		bases[slot].put(scratch.duplicate());
+		bases[slot].flip();
+		baseTicks[slot] = t;
+		snapshotAcked = Math.max(snapshotAcked, t);
+
+		// only comparable if we still have that tick, our state for it no longer depends on guesses,
+		// and it isn't about to be run again anyway
+		if (t >= tick || tick - t >= history || t > remoteConfirmed + 1 || rollbackFrom < t)
+			return;
+		ByteBuffer ours = states[slot(t)];
+		if (!WorldCodec.same(ours, scratch)) {
+			resyncs++;
+			ours.clear();
+			ours.put(scratch.duplicate());
+			ours.flip();
+			rollbackFrom = Math.min(rollbackFrom, t);
+		}
+	}
+
+	// sends whatever is in the send buffer
+	private void send() throws IOException {
+		out.flip();
+		bytesSent += out.remaining();
+		packetsSent++;
+		transport.send(out);
+	}
+
+	// where tick t lives in the arrays
+	private static int slot(long t) {
+		return (int) (t % history);
+	}
+
+	// closes the connection
+	public void close() throws IOException {
+		transport.close();
+	}
+
+	// Getter function, returns the game being played
+	public World getWorld() {
+		return world;
+	}
+
+	// Getter function, returns whether we are the host (and play the left paddle)
+	public boolean isHost() {
+		return host;
+	}
+
+	// Getter function, returns the next tick to be run
+	public long getTick() {
+		return tick;
+	}
+
+	// Getter function, returns the last tick we have all of the other player's keys up to
+	public long getConfirmedTick() {
+		return remoteConfirmed;
+	}
+
+	// Getter function, returns whether we haven't heard from the other player for a while
+	public boolean isDisconnected() {
+		return tick - lastHeard > timeoutTicks;
+	}
+
+	// Getter function, returns how many times we had to take the host's state
+	public long getResyncs() {
+		return resyncs;
+	}
+
+	// Summary of the connection: bandwidth per second of game time, rollbacks and snapshots
+	public String report() {
+		double seconds = Math.max(1, tick) / (double) FrameScheduler.TICKS_PER_SECOND;
+		return String.format(
+				"Net (%s): %d ticks, sent %.0f B/s (%.1f packets/s), received %.0f B/s (%.1f packets/s), "
+						+ "%d rollbacks (avg %.1f ticks, deepest %d), %d ticks waiting, snapshots %d sent (avg %.0f B, %d too big) "
+						+ "%d received, %d resyncs, %d bad packets",
+				host ? "host" : "guest", tick, bytesSent / seconds, packetsSent / seconds, bytesReceived / seconds,
+				packetsReceived / seconds, rollbacks, rollbacks == 0 ? 0 : (double) rollbackTicks / rollbacks,
+				maxDepth, stalls, snapshotsSent, snapshotsSent == 0 ? 0 : (double) snapshotBytes / snapshotsSent,
+				snapshotsSkipped, snapshotsReceived, resyncs, badPackets);
+	}
+}
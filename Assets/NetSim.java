@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.util.Random;
+
+/* NetSim class plays a networked match between two NetSessions over a LoopbackTransport
+ * Both players are bots mashing keys at random. Time is simulated, so a few minutes of play with
+ * a bad connection take a second or two. At the end both computers should have exactly the same
+ * game; with "corrupt" the guest's ball gets knocked sideways halfway through, which the host's
+ * snapshots should catch and put right.
+ * Usage: java NetSim [seconds] [latency ms] [jitter ms] [loss] [seed] [corrupt]
+ */
+
+public class NetSim {
+
+	// the simulated time, in nanoseconds
+	private static long now;
+
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 120;
+		double latency = args.length > 1 ? Double.parseDouble(args[1]) : 50;
+		double jitter = args.length > 2 ? Double.parseDouble(args[2]) : 20;
+		double loss = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		boolean corrupt = args.length > 5 && args[5].equals("corrupt");
+
+		LoopbackTransport[] ends = LoopbackTransport.pair(latency, jitter, loss, seed, new LoopbackTransport.Clock() {
+			public long nanoTime() {
+				return now;
+			}
+		});
+		NetSession host = new NetSession(ends[0], true, seed), guest = new NetSession(ends[1], false, seed);
+		Random random = new Random(seed);
+		int hostKeys = 0, guestKeys = 0;
+
+		long ticks = (long) seconds * FrameScheduler.TICKS_PER_SECOND;
+		long start = System.nanoTime();
+		for (long i = 0; i < ticks; i++) {
+			now += FrameScheduler.TICK_NANOS;
+			hostKeys = bot(random, hostKeys, host.getWorld());
+			guestKeys = bot(random, guestKeys, guest.getWorld());
+			host.tick(hostKeys);
+			guest.tick(guestKeys);
+			if (corrupt && i == ticks / 2)
+				guest.getWorld().getBall().moveBy(20, 0);
+		}
+
+		// let go of everything: bring the one behind up to the same tick, then let both sides hear each other's last keys
+		while (host.getTick() != guest.getTick()) {
+			now += FrameScheduler.TICK_NANOS;
+			if (host.getTick() < guest.getTick())
+				host.tick(0);
+			else
+				guest.tick(0);
+			host.update();
+			guest.update();
+		}
+		while (host.getConfirmedTick() < host.getTick() - 1 || guest.getConfirmedTick() < guest.getTick() - 1) {
+			now += FrameScheduler.TICK_NANOS;
+			host.update();
+			guest.update();
+		}
+		double took = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d s of play at %.0f ms latency, %.0f ms jitter, %.0f%% loss, took %.2f s%n", seconds,
+				latency, jitter, loss * 100, took);
+		System.out.println(host.report());
+		System.out.println(guest.report());
+		World a = host.getWorld(), b = guest.getWorld();
+		boolean same = a.hash() == b.hash();
+		System.out.printf("Tick %d: host %d - %d, guest %d - %d, %s%n", host.getTick(), a.getScore(false).value,
+				a.getScore(true).value, b.getScore(false).value, b.getScore(true).value,
+				same ? "identical" : "DIFFERENT");
+		if (!same)
+			System.exit(1);
+	}
+
+	// a player that changes which keys it holds now and then, and presses n when nothing is happening
+	private static int bot(Random random, int keys, World world) {
+		if (world.isWaiting() && random.nextInt(30) == 0)
+			return keys | NetSession.NEXT_ROUND;
+		keys &= 15;
+		if (random.nextInt(10) != 0)
+			return keys;
+		int vertical = random.nextInt(3), horizontal = random.nextInt(5);
+		return (vertical == 0 ? Paddle.UP : vertical == 1 ? Paddle.DOWN : 0)
+				| (horizontal == 0 ? Paddle.LEFT : horizontal == 1 ? Paddle.RIGHT : 0);
+	}
+}
@@ -2,12 +2,12 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
 
 /* Paddle class represents the paddles used by the players
  * Child of Rectangle for obvious reasons lol
- * Deals with any keypresses using awt.event.KeyEvent
+ * Moves according to which of UP, DOWN, LEFT and RIGHT are held down
+ * (toKey() works out which of those a keyboard event means)
  */
 
 @SuppressWarnings("serial")
@@ -17,26 +17,34 @@ public class Paddle extends Rectangle {
 	// In order: current length, vertical movement direction, horizontal movement direction, current mass of current Paddle
 	// In order: horizontal speed, vertical speed, vertical position, horizontal position of current Paddle
 	// In order: whether it's the paddle on the right or not
-	// In order: a set containing the keys currently pressed
+	// In order: one bit for each movement key, bitmask of the keys currently pressed
 	private static final int initialSpeed = 10, initialLength = 30, width = 2, initialMass = 42;
-	private int length, verticalDirection, horizontalDirection, mass;
+	public static final int UP = 1, DOWN = 2, LEFT = 4, RIGHT = 8;
+	private int length, verticalDirection, horizontalDirection, mass, keysHeld;
 	private double horizontalSpeed, verticalSpeed, verticalPosition, horizontalPosition;
 	private boolean rightPlayer;
-	private Set<Character> keyPressed = new HashSet<>();
 
 	// Constructor
 	public Paddle(boolean rightPlayer) {
-		super(rightPlayer ? GamePanel.GAME_WIDTH - 6 : 4, GamePanel.GAME_HEIGHT / 2 - initialLength + 5, width,
+		super(rightPlayer ? World.GAME_WIDTH - 6 : 4, World.GAME_HEIGHT / 2 - initialLength + 5, width,
 				initialLength);
+		this.rightPlayer = rightPlayer;
+		reset();
+	}
+
+	// Puts the Paddle back the way the constructor leaves it, with no keys held
+	// (a new round or game reuses the same Paddles rather than making more)
+	public void reset() {
 		horizontalSpeed = 0;
 		verticalSpeed = 0;
 		length = initialLength;
-		verticalPosition = GamePanel.GAME_HEIGHT / 2 - initialLength + 5;
-		horizontalPosition = rightPlayer ? GamePanel.GAME_WIDTH - 6 : 4;
+		verticalPosition = World.GAME_HEIGHT / 2 - initialLength + 5;
+		horizontalPosition = rightPlayer ? World.GAME_WIDTH - 6 : 4;
 		verticalDirection = 1;
 		horizontalDirection = 1;
-		this.rightPlayer = rightPlayer;
 		mass = 42;
+		keysHeld = 0;
+		setBounds((int) horizontalPosition, (int) verticalPosition, width, length);
 	}
 
 	// Changes the double position variables based on the direction and speed
@@ -97,23 +105,44 @@ public class Paddle extends Rectangle {
 		this.horizontalDirection = horizontalDirection;
 	}
 
-	// Getter function, retrieves a double[] of the speeds
-	public double[] getSpeeds() {
-		return new double[] { horizontalSpeed, verticalSpeed };
+	// Getter function, retrieves the horizontal speed
+	public double getHorizontalSpeed() {
+		return horizontalSpeed;
+	}
+
+	// Getter function, retrieves the vertical speed
+	public double getVerticalSpeed() {
+		return verticalSpeed;
+	}
+
+	// Getter function, retrieves the vertical direction travelled (-1 up, 1 down, 0 still)
+	public int getVerticalDirection() {
+		return verticalDirection;
+	}
+
+	// Getter function, retrieves the horizontal direction travelled (-1 left, 1 right, 0 still)
+	public int getHorizontalDirection() {
+		return horizontalDirection;
+	}
+
+	// Getter function, retrieves the x coordinate of the left edge of the paddle
+	public double getLeft() {
+		return horizontalPosition;
 	}
 
-	// Getter function, retrieves an int[] of the direction travelled
-	public int[] getDirections() {
-		return new int[] { verticalDirection, horizontalDirection };
+	// Getter function, retrieves the x coordinate of the right edge of the paddle
+	public double getRight() {
+		return horizontalPosition + width;
 	}
 
-	// Getter function, retrieves a double[][] of the current position of the paddle
-	public double[][] getCoords() {
-		return new double[][] { 
-			    { horizontalPosition, verticalPosition }, 
-			    { horizontalPosition + 2, verticalPosition },
-				{ horizontalPosition + 2, verticalPosition + length },
-				{ horizontalPosition, verticalPosition + length } };
+	// Getter function, retrieves the y coordinate of the top of the paddle
+	public double getTop() {
+		return verticalPosition;
+	}
+
+	// Getter function, retrieves the y coordinate of the bottom of the paddle
+	public double getBottom() {
+		return verticalPosition + length;
 	}
 
 	// Getter function, retrieves the length of the paddle
@@ -126,112 +155,102 @@ public class Paddle extends Rectangle {
 		return mass;
 	}
 
-	// Handles keypresses by updating movement and speed
-	public void keyPressed(KeyEvent e) {
-		if (!rightPlayer) {
-			switch (e.getKeyChar()) {
-			case 'd':
-				horizontalDirection = 1;
-				horizontalSpeed = initialSpeed / 2;
-				keyPressed.add(e.getKeyChar());
-				break;
-			case 'a':
-				horizontalDirection = -1;
-				horizontalSpeed = initialSpeed / 2;
-				keyPressed.add(e.getKeyChar());
-				break;
-			case 'w':
-				verticalDirection = -1;
-				verticalSpeed = initialSpeed;
-				keyPressed.add(e.getKeyChar());
-				break;
-			case 's':
-				verticalDirection = 1;
-				verticalSpeed = initialSpeed;
-				keyPressed.add(e.getKeyChar());
-				break;
-			default:
-				break;
-			}
-		} else
-			switch (e.getKeyCode()) {
-			case KeyEvent.VK_RIGHT:
-				horizontalDirection = 1;
-				horizontalSpeed = initialSpeed / 2;
-				keyPressed.add('z');
-				break;
-			case KeyEvent.VK_LEFT:
-				horizontalDirection = -1;
-				horizontalSpeed = initialSpeed / 2;
-				keyPressed.add('x');
-				break;
-			case KeyEvent.VK_UP:
-				verticalDirection = -1;
-				verticalSpeed = initialSpeed;
-				keyPressed.add('c');
-				break;
-			case KeyEvent.VK_DOWN:
-				verticalDirection = 1;
-				verticalSpeed = initialSpeed;
-				keyPressed.add('v');
-				break;
-			default:
-				break;
-			}
+	// Writes the state of the paddle for read() to put back
+	public void write(ByteBuffer out) {
+		out.putDouble(horizontalPosition);
+		out.putDouble(verticalPosition);
+		out.putDouble(horizontalSpeed);
+		out.putDouble(verticalSpeed);
+		out.putInt(length);
+		out.putInt(mass);
+		out.put((byte) horizontalDirection);
+		out.put((byte) verticalDirection);
+		out.put((byte) keysHeld);
+	}
+
+	// Puts back a state written by write()
+	public void read(ByteBuffer in) {
+		horizontalPosition = in.getDouble();
+		verticalPosition = in.getDouble();
+		horizontalSpeed = in.getDouble();
+		verticalSpeed = in.getDouble();
+		length = in.getInt();
+		mass = in.getInt();
+		horizontalDirection = in.get();
+		verticalDirection = in.get();
+		keysHeld = in.get();
+		x = (int) Math.round(horizontalPosition);
+		y = (int) Math.round(verticalPosition);
+		height = length;
+	}
+
+	// Handles keypresses (one of UP, DOWN, LEFT, RIGHT) by updating movement and speed
+	public void press(int key) {
+		switch (key) {
+		case RIGHT:
+			horizontalDirection = 1;
+			horizontalSpeed = initialSpeed / 2;
+			break;
+		case LEFT:
+			horizontalDirection = -1;
+			horizontalSpeed = initialSpeed / 2;
+			break;
+		case UP:
+			verticalDirection = -1;
+			verticalSpeed = initialSpeed;
+			break;
+		case DOWN:
+			verticalDirection = 1;
+			verticalSpeed = initialSpeed;
+			break;
+		default:
+			return;
+		}
+		keysHeld |= key;
 	}
 
 	// Handles keyreleases by removing directions and removing speed
-	public void keyReleased(KeyEvent e) {
+	public void release(int key) {
+		keysHeld &= ~key;
+		if ((keysHeld & (UP | DOWN)) == 0) {
+			verticalSpeed = 0;
+			verticalDirection = 0;
+		}
+		if ((keysHeld & (LEFT | RIGHT)) == 0) {
+			horizontalSpeed = 0;
+			horizontalDirection = 0;
+		}
+	}
+
+	// Maps a key (code and character, as in KeyEvent) to a paddle movement bit:
+	// WASD for the left paddle, arrow keys for the right one
+	// Returns 0 if the key doesn't move that paddle
+	public static int toKey(int keyCode, char keyChar, boolean rightPlayer) {
 		if (!rightPlayer) {
-			switch (e.getKeyChar()) {
-			case 'd':
-				keyPressed.remove(e.getKeyChar());
-				break;
-			case 'a':
-				keyPressed.remove(e.getKeyChar());
-				break;
+			switch (keyChar) {
 			case 'w':
-				keyPressed.remove(e.getKeyChar());
-				break;
+				return UP;
 			case 's':
-				keyPressed.remove(e.getKeyChar());
-				break;
-			default:
-				break;
-			}
-			if (!keyPressed.contains('w') && !keyPressed.contains('s')) {
-				verticalSpeed = 0;
-				verticalDirection = 0;
-			}
-			if (!keyPressed.contains('d') && !keyPressed.contains('a')) {
-				horizontalSpeed = 0;
-				horizontalDirection = 0;
-			}
-		} else {
-			switch (e.getKeyCode()) {
-			case KeyEvent.VK_RIGHT:
-				keyPressed.remove('z');
-				break;
-			case KeyEvent.VK_LEFT:
-				keyPressed.remove('x');
-				break;
-			case KeyEvent.VK_UP:
-				keyPressed.remove('c');
-				break;
-			case KeyEvent.VK_DOWN:
-				keyPressed.remove('v');
-				break;
+				return DOWN;
+			case 'a':
+				return LEFT;
+			case 'd':
+				return RIGHT;
 			default:
-				break;
-			}
-			if (!keyPressed.contains('c') && !keyPressed.contains('v')) {
-				verticalSpeed = 0;
-				verticalDirection = 0;
-			}
-			if (!keyPressed.contains('z') && !keyPressed.contains('x')) {
-				horizontalSpeed = 0;
-				horizontalDirection = 0;
+				return 0;
 			}
 		}
+		switch (keyCode) {
+		case KeyEvent.VK_UP:
+			return UP;
+		case KeyEvent.VK_DOWN:
+			return DOWN;
+		case KeyEvent.VK_LEFT:
+			return LEFT;
+		case KeyEvent.VK_RIGHT:
+			return RIGHT;
+		default:
+			return 0;
+		}
 	}
 }
\ No newline at end of file
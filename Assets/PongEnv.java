@@ -0,0 +1,273 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/* PongEnv class runs lots of games side by side for training paddle bots, as fast as they'll go
+ * No window, sound or waiting: step() runs one tick of every game with the actions given and
+ * fills in the arrays the caller passes with what each player sees and what they earned.
+ * Both paddles are players. An action is the Paddle keys held for that tick (any of UP, DOWN,
+ * LEFT and RIGHT or'd together, 0 for none). Every game is a whole match: when one ends (or
+ * goes on for maxSteps) it says done and starts the next one straight away, so the observation
+ * that comes back with done is already the first of the new match.
+ * Observations are seen from each player's own side: the right player's are mirrored, so one
+ * bot can learn to play both. Rewards are +1 for scoring a point and -1 for letting one in.
+ * Nothing is allocated once it's made, and the games can be split across threads, which each
+ * run their share and wait for the next step without taking any locks.
+ *
+ * Array layout, for game i: actions[2i] is the left player's, actions[2i + 1] the right player's,
+ * and the same for rewards; observations for player p (0 left, 1 right) start at
+ * (2i + p) * OBSERVATION_SIZE; done[i] is for the whole game.
+ */
+
+public class PongEnv {
+
+	// In order: numbers in one player's observation, most ticks a match may last before it's called off
+	public static final int OBSERVATION_SIZE = 10;
+	private static final int maxSteps = 60 * 60 * 10;
+
+	// In order: the games, the keys each player held last step, steps into each match,
+	// the scores at the end of the last step, how many matches each game has started (for the next seed)
+	private final World[] worlds;
+	private final int[] held, steps, scores;
+	private final long[] matches;
+	private long seed;
+
+	// the arrays passed to the step in progress (the workers read them once it starts)
+	private int[] actions;
+	private float[] observations, rewards;
+	private boolean[] done;
+
+	// In order: the threads sharing the games with the caller (none if it does them all),
+	// which step they should be on, how many are still busy with it, the thread waiting for them
+	private final Worker[] workers;
+	private volatile long generation;
+	private final AtomicInteger busy = new AtomicInteger();
+	private volatile Thread waiting;
+	private volatile boolean closed;
+	// what a worker threw during this step, for step() to throw again on the caller's thread
+	private volatile Throwable failure;
+
+	// one of the threads, running games from to to - 1 of every step
+	private final class Worker extends Thread {
+		final int from, to;
+
+		Worker(int from, int to, int number) {
+			super("PongEnv worker " + number);
+			this.from = from;
+			this.to = to;
+			setDaemon(true);
+		}
+
+		public void run() {
+			long done = 0;
+			while (true) {
+				while (generation == done && !closed)
+					LockSupport.park(this);
+				if (closed)
+					return;
+				done++;
+				try {
+					stepGames(from, to);
+				} catch (Throwable e) {
+					if (failure == null)
+						failure = e;
+				} finally {
+					// counted even if it failed, or step() would wait for it forever
+					if (busy.decrementAndGet() == 0)
+						LockSupport.unpark(waiting);
+				}
+			}
+		}
+	}
+
+	// Constructor, accepts the number of games (all run on the thread calling step())
+	public PongEnv(int count) {
+		this(count, 1);
+	}
+
+	// Constructor, accepts the number of games and how many threads to split them across
+	// (the thread calling step() counts as one of them)
+	public PongEnv(int count, int threads) {
+		worlds = new World[count];
+		for (int i = 0; i < count; i++)
+			worlds[i] = new World(i);
+		held = new int[count * 2];
+		steps = new int[count];
+		scores = new int[count * 2];
+		matches = new long[count];
+
+		threads = Math.max(1, Math.min(threads, count));
+		workers = new Worker[threads - 1];
+		for (int t = 1; t < threads; t++) {
+			workers[t - 1] = new Worker(count * t / threads, count * (t + 1) / threads, t);
+			workers[t - 1].start();
+		}
+	}
+
+	// Starts every game over: game i plays matches seeded seed + i, seed + i + getCount(), ...
+	public void reset(long seed) {
+		this.seed = seed;
+		for (int i = 0; i < worlds.length; i++) {
+			matches[i] = 0;
+			newMatch(i);
+		}
+	}
+
+	// Starts game i over with a match from the given seed (the matches after it carry on from reset(long))
+	public void reset(int i, long seed) {
+		startMatch(i, seed);
+	}
+
+	// Fills in what every player sees right now, without stepping (for the first step after a reset)
+	public void observe(float[] observations) {
+		for (int i = 0; i < worlds.length; i++)
+			observe(i, observations);
+	}
+
+	// Runs one tick of every game, each player holding the keys in actions, and fills in what they see
+	// afterwards, the reward each one got, and which games finished a match (and started a new one)
+	public void step(int[] actions, float[] observations, float[] rewards, boolean[] done) {
+		int count = worlds.length;
+		if (closed)
+			throw new IllegalStateException("This PongEnv has been closed");
+		if (actions.length < count * 2 || observations.length < count * 2 * OBSERVATION_SIZE
+				|| rewards.length < count * 2 || done.length < count)
+			throw new IllegalArgumentException("Arrays too short for " + count + " games");
+		this.actions = actions;
+		this.observations = observations;
+		this.rewards = rewards;
+		this.done = done;
+		if (workers.length == 0) {
+			stepGames(0, count);
+			return;
+		}
+
+		// hand the other threads their share, do ours, then wait for theirs (even if ours threw, so
+		// they're all done before the next step starts)
+		waiting = Thread.currentThread();
+		failure = null;
+		busy.set(workers.length);
+		generation++; // after busy is set, so no worker can finish before we're counting it
+		for (Worker worker : workers)
+			LockSupport.unpark(worker);
+		try {
+			stepGames(0, workers[0].from);
+		} finally {
+			while (busy.get() != 0)
+				LockSupport.park(this);
+		}
+
+		Throwable failed = failure;
+		if (failed instanceof RuntimeException)
+			throw (RuntimeException) failed;
+		if (failed instanceof Error)
+			throw (Error) failed;
+		if (failed != null)
+			throw new IllegalStateException("A PongEnv worker failed", failed);
+	}
+
+	// runs one step of games from to to - 1
+	private void stepGames(int from, int to) {
+		for (int i = from; i < to; i++) {
+			World world = worlds[i];
+			if (world.isWaiting())
+				world.nextRound(); // nobody needs to press n here
+			apply(i, false, actions[2 * i]);
+			apply(i, true, actions[2 * i + 1]);
+			world.tick();
+			steps[i]++;
+
+			// a point to whoever's score went up
+			int left = world.getScore(false).value, right = world.getScore(true).value;
+			float reward = left - scores[2 * i] - (right - scores[2 * i + 1]);
+			rewards[2 * i] = reward;
+			rewards[2 * i + 1] = -reward;
+			scores[2 * i] = left;
+			scores[2 * i + 1] = right;
+
+			done[i] = world.getWon() != 0 || steps[i] >= maxSteps;
+			if (done[i])
+				newMatch(i);
+			observe(i, observations);
+		}
+	}
+
+	// starts game i's next match, from the next of its seeds
+	private void newMatch(int i) {
+		startMatch(i, seed + i + matches[i]++ * worlds.length);
+	}
+
+	// starts a match in game i from seed
+	private void startMatch(int i, long seed) {
+		worlds[i].newGame(seed);
+		held[2 * i] = 0;
+		held[2 * i + 1] = 0;
+		steps[i] = 0;
+		scores[2 * i] = 0;
+		scores[2 * i + 1] = 0;
+	}
+
+	// presses and releases a player's keys to match what they are holding this step (like NetSession does)
+	private void apply(int i, boolean rightPlayer, int keys) {
+		World world = worlds[i];
+		int player = 2 * i + (rightPlayer ? 1 : 0);
+		for (int key = Paddle.UP; key <= Paddle.RIGHT; key <<= 1) {
+			if ((keys & key) != 0)
+				world.press(rightPlayer, key);
+			else if ((held[player] & key) != 0)
+				world.release(rightPlayer, key);
+		}
+		held[player] = keys & 15;
+	}
+
+	// fills in what both players of game i see: the ball's position, velocity and size, then their own
+	// paddle's position and length, then the other paddle's position, all scaled to about -1 to 1,
+	// with the right player's flipped left to right so that they also seem to be playing from the left
+	private void observe(int i, float[] observations) {
+		World world = worlds[i];
+		Ball ball = world.getBall();
+		Paddle left = world.getPaddle(false), right = world.getPaddle(true);
+		float width = World.GAME_WIDTH, height = World.GAME_HEIGHT;
+		float radius = ball.getDiameter() / 2f;
+		float ballX = (float) ball.getCurrentX() + radius, ballY = (float) ball.getCurrentY() + radius;
+		float speedX = (float) ball.getVelocityX() / 10, speedY = (float) ball.getVelocityY() / 10;
+
+		int o = 2 * i * OBSERVATION_SIZE;
+		for (int player = 0; player < 2; player++, o += OBSERVATION_SIZE) {
+			boolean mirrored = player == 1;
+			Paddle own = mirrored ? right : left, other = mirrored ? left : right;
+			observations[o] = (mirrored ? width - ballX : ballX) / width;
+			observations[o + 1] = ballY / height;
+			observations[o + 2] = mirrored ? -speedX : speedX;
+			observations[o + 3] = speedY;
+			observations[o + 4] = ball.getDiameter() / width;
+			observations[o + 5] = x(own, mirrored) / width;
+			observations[o + 6] = (float) own.getTop() / height;
+			observations[o + 7] = own.getLength() / height;
+			observations[o + 8] = x(other, mirrored) / width;
+			observations[o + 9] = (float) other.getTop() / height;
+		}
+	}
+
+	// the x of the middle of a paddle, flipped if the player sees things mirrored
+	private static float x(Paddle paddle, boolean mirrored) {
+		float x = (float) (paddle.getLeft() + paddle.getWidth() / 2);
+		return mirrored ? World.GAME_WIDTH - x : x;
+	}
+
+	// Stops the threads (the games can't be stepped after this)
+	public void close() {
+		closed = true;
+		for (Worker worker : workers)
+			LockSupport.unpark(worker);
+	}
+
+	// Getter function, returns the number of games
+	public int getCount() {
+		return worlds.length;
+	}
+
+	// Getter function, returns game i (to watch it, or check it; don't change it)
+	public World getWorld(int i) {
+		return worlds[i];
+	}
+}
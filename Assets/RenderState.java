@@ -0,0 +1,131 @@
+/* RenderState class is a copy of everything the Renderer needs from a World for one frame
+ * The game thread fills one in after each tick and hands it over through a StateBuffer,
+ * so drawing never reads the live Ball, Paddles or Scores while they are being changed.
+ * Once published a RenderState is only read, never written, until it is handed back.
+ * It also remembers where the ball and paddles were on the tick before, so that a frame drawn between
+ * two ticks can put them part of the way along (interpolate()) instead of jumping a whole tick at a time.
+ */
+
+public class RenderState {
+
+	// In order: ball position and size, whether it should flash colours
+	public int ballX, ballY, ballDiameter;
+	public boolean ballRandomised;
+
+	// In order: paddle positions and lengths
+	public int leftX, leftY, leftLength, rightX, rightY, rightLength;
+
+	// In order: where the ball and paddles were on the tick before (the same as now if they didn't get there by moving)
+	public int previousBallX, previousBallY, previousLeftX, previousLeftY, previousRightX, previousRightY;
+
+	// In order: scores, paddle zone border, who won (1 right, -1 left, 0 nobody)
+	public int leftScore, rightScore, paddleBorder, won;
+
+	// In order: whether the ball is stuck, whether we are between rounds
+	public boolean stuck, newRound;
+
+	// In order: number of chaos mode balls, their top left corners and diameters
+	// (the arrays only ever grow, and can be longer than chaosCount)
+	public int chaosCount;
+	public int[] chaosX = new int[0], chaosY = new int[0], chaosDiameter = new int[0];
+
+	// copies the current state of the world into this object, with the positions from previous (the state
+	// published on the tick before) as where things were; null when they didn't move there, e.g. a new round
+	public void copyFrom(World world, RenderState previous) {
+		copyFrom(world);
+		if (previous != null) {
+			previousBallX = previous.ballX;
+			previousBallY = previous.ballY;
+			previousLeftX = previous.leftX;
+			previousLeftY = previous.leftY;
+			previousRightX = previous.rightX;
+			previousRightY = previous.rightY;
+		}
+	}
+
+	// copies the current state of the world into this object, as if nothing had moved since the tick before
+	public void copyFrom(World world) {
+		Ball ball = world.getBall();
+		ballX = ball.x;
+		ballY = ball.y;
+		ballDiameter = ball.getDiameter();
+		ballRandomised = ball.isRandom();
+
+		Paddle left = world.getPaddle(false), right = world.getPaddle(true);
+		leftX = left.x;
+		leftY = left.y;
+		leftLength = left.getLength();
+		rightX = right.x;
+		rightY = right.y;
+		rightLength = right.getLength();
+		previousBallX = ballX;
+		previousBallY = ballY;
+		previousLeftX = leftX;
+		previousLeftY = leftY;
+		previousRightX = rightX;
+		previousRightY = rightY;
+
+		leftScore = world.getScore(false).value;
+		rightScore = world.getScore(true).value;
+		paddleBorder = world.getPaddleBorder();
+		won = world.getWon();
+		stuck = world.isStuck();
+		newRound = world.isNewRound();
+
+		BallField chaos = world.getChaos();
+		chaosCount = chaos == null ? 0 : chaos.getCount();
+		if (chaosX.length < chaosCount) {
+			chaosX = new int[chaosCount];
+			chaosY = new int[chaosCount];
+			chaosDiameter = new int[chaosCount];
+		}
+		for (int i = 0; i < chaosCount; i++) {
+			double radius = chaos.getDiameter(i) / 2;
+			chaosX[i] = (int) Math.round(chaos.getX(i) - radius);
+			chaosY[i] = (int) Math.round(chaos.getY(i) - radius);
+			chaosDiameter[i] = (int) Math.round(chaos.getDiameter(i));
+		}
+	}
+
+	// fills this in as a copy of state, but with the ball and paddles alpha of the way (0 to 1) from where they
+	// were on the tick before to where they are now
+	public void interpolate(RenderState state, double alpha) {
+		ballX = between(state.previousBallX, state.ballX, alpha);
+		ballY = between(state.previousBallY, state.ballY, alpha);
+		leftX = between(state.previousLeftX, state.leftX, alpha);
+		leftY = between(state.previousLeftY, state.leftY, alpha);
+		rightX = between(state.previousRightX, state.rightX, alpha);
+		rightY = between(state.previousRightY, state.rightY, alpha);
+		previousBallX = ballX;
+		previousBallY = ballY;
+		previousLeftX = leftX;
+		previousLeftY = leftY;
+		previousRightX = rightX;
+		previousRightY = rightY;
+		ballDiameter = state.ballDiameter;
+		ballRandomised = state.ballRandomised;
+		leftLength = state.leftLength;
+		rightLength = state.rightLength;
+		leftScore = state.leftScore;
+		rightScore = state.rightScore;
+		paddleBorder = state.paddleBorder;
+		won = state.won;
+		stuck = state.stuck;
+		newRound = state.newRound;
+
+		chaosCount = state.chaosCount;
+		if (chaosX.length < chaosCount) {
+			chaosX = new int[chaosCount];
+			chaosY = new int[chaosCount];
+			chaosDiameter = new int[chaosCount];
+		}
+		System.arraycopy(state.chaosX, 0, chaosX, 0, chaosCount);
+		System.arraycopy(state.chaosY, 0, chaosY, 0, chaosCount);
+		System.arraycopy(state.chaosDiameter, 0, chaosDiameter, 0, chaosCount);
+	}
+
+	// the whole number alpha of the way from one to another
+	private static int between(int from, int to, double alpha) {
+		return (int) Math.round(from + (to - from) * alpha);
+	}
+}
@@ -0,0 +1,225 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+/* Renderer class draws a frame of the game from a RenderState
+ * Doesn't care where it is drawing to - the screen, an off screen image or a benchmark's BufferedImage -
+ * and doesn't need a window, sound or game thread to exist.
+ * Never looks at the live World: it keeps its own Ball, Paddles and Scores just for drawing,
+ * and moves them to wherever the RenderState says before each frame.
+ * damage() works out which parts of the screen a new frame changes compared to the one before, so
+ * only those need drawing again (everything is drawn clipped to them, the rest of the frame stays).
+ * Everything that doesn't move is drawn once into a background image, redrawn only when its key - zone
+ * border, message, result - changes; a frame is that image plus whatever moves on top of it.
+ */
+
+public class Renderer {
+
+	// dimensions of window
+	private static final int GAME_WIDTH = World.GAME_WIDTH;
+	private static final int GAME_HEIGHT = World.GAME_HEIGHT;
+
+	// copies of the game objects, only used for drawing
+	private Ball ball;
+	private Paddle rightPaddle, leftPaddle;
+	private Score rightScore, leftScore;
+
+	// the "Player x won" message, and the result it was made for
+	private TextSprite winSprite;
+	private int winKey = -1;
+
+	// which picture the background shows, as the low bits of backgroundKey (the zone border is above them)
+	private static final int PLAYING = 0, STUCK = 1, NEW_ROUND = 2, WON = 3;
+
+	// In order: the background image (null until first needed), what it was drawn for,
+	// how many times it has been drawn
+	private BufferedImage background;
+	private long backgroundKey;
+	private int backgroundBuilds;
+
+	// the frame damage() was last called for: where the ball and paddles were, the scores, and
+	// everything that changes the whole picture (who won, between rounds, zone borders, chaos mode)
+	private boolean drawnBefore, drawnStuck, drawnNewRound, drawnChaos;
+	private int drawnBallX, drawnBallY, drawnBallDiameter, drawnLeftX, drawnLeftY, drawnLeftLength, drawnRightX,
+			drawnRightY, drawnRightLength, drawnLeftScore, drawnRightScore, drawnWon, drawnPaddleBorder;
+
+	// pixels added around everything moving, in case the edges are drawn a pixel further out than the bounds say
+	private static final int margin = 1;
+
+	// Constructor
+	public Renderer() {
+		ball = new Ball(0, 0);
+		rightPaddle = new Paddle(true);
+		leftPaddle = new Paddle(false);
+		rightScore = new Score(true);
+		leftScore = new Score(false);
+	}
+
+	// draws one whole frame of the game, wherever the graphics object happens to point:
+	// the background in one go, then everything that moves on top
+	public void render(Graphics graphics, RenderState state) {
+		update(state);
+		redraw(graphics, state);
+	}
+
+	// draws the frame update() was last called for again, for drawing one frame a clip at a time
+	// (so nothing that should change once a frame, like the ball's flashing, changes with every clip)
+	public void redraw(Graphics graphics, RenderState state) {
+		graphics.drawImage(background(state), 0, 0, null);
+		draw(graphics, state); // update the positions of everything on the screen
+	}
+
+	// returns the background for this state, drawing it again first if it is showing something else
+	private BufferedImage background(RenderState state) {
+		int message = state.won != 0 ? WON : state.stuck ? STUCK : state.newRound ? NEW_ROUND : PLAYING;
+		long key = (long) state.paddleBorder << 2 | message;
+		if (message == WON)
+			key |= (long) winKey(state) << 32; // the message has the final score in it
+		if (background != null && key == backgroundKey)
+			return background;
+
+		if (background == null)
+			background = new BufferedImage(GAME_WIDTH, GAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics graphics = background.getGraphics();
+		graphics.setColor(Color.black);
+		graphics.fillRect(0, 0, GAME_WIDTH, GAME_HEIGHT);
+		int paddleBorder = state.paddleBorder;
+		if (message != WON) {
+			// marks borders
+			graphics.setColor(Color.white);
+			graphics.drawLine(paddleBorder, 0, paddleBorder, GAME_HEIGHT);
+			graphics.drawLine(GAME_WIDTH - paddleBorder, 0, GAME_WIDTH - paddleBorder, GAME_HEIGHT);
+
+			// what happens if it is stuck
+			if (message == STUCK)
+				TextCache.STUCK.draw(graphics, (int) (GAME_WIDTH * 0.2), GAME_HEIGHT / 2);
+			// what happens when it's a new round
+			else if (message == NEW_ROUND)
+				TextCache.NEXT_ROUND.draw(graphics, (int) (GAME_WIDTH * 0.2), GAME_HEIGHT / 2);
+			// what happens normally
+			else
+				graphics.drawLine(GAME_WIDTH / 2, 0, GAME_WIDTH / 2, GAME_HEIGHT);
+		} else {
+			// what happens when a player wins
+			winMessage(state).draw(graphics, (int) (GAME_WIDTH * 0.25), GAME_HEIGHT / 2);
+			TextCache.NEW_GAME.draw(graphics, (int) (GAME_WIDTH * 0.15), (int) (GAME_HEIGHT * 0.55));
+		}
+		graphics.dispose();
+		backgroundKey = key;
+		backgroundBuilds++;
+		return background;
+	}
+
+	// Getter function, returns how many times the background has been drawn
+	public int getBackgroundBuilds() {
+		return backgroundBuilds;
+	}
+
+	// Adds the parts of the screen that will look different when state is drawn, compared to the state
+	// passed in last time, to dirty. The first frame, or anything that changes the whole layout, is all of it.
+	public void damage(RenderState state, DirtyRegions dirty) {
+		if (!drawnBefore || state.won != drawnWon || state.stuck != drawnStuck || state.newRound != drawnNewRound
+				|| state.paddleBorder != drawnPaddleBorder || state.chaosCount > 0 || drawnChaos)
+			dirty.addAll();
+		else {
+			// the ball where it was and where it is (it is drawn every frame, flashing or not)
+			addArea(dirty, drawnBallX, drawnBallY, drawnBallDiameter, drawnBallDiameter);
+			addArea(dirty, state.ballX, state.ballY, state.ballDiameter, state.ballDiameter);
+
+			// each paddle, only if it moved or changed length
+			int width = (int) leftPaddle.getWidth();
+			if (state.leftX != drawnLeftX || state.leftY != drawnLeftY || state.leftLength != drawnLeftLength) {
+				addArea(dirty, drawnLeftX, drawnLeftY, width, drawnLeftLength);
+				addArea(dirty, state.leftX, state.leftY, width, state.leftLength);
+			}
+			if (state.rightX != drawnRightX || state.rightY != drawnRightY || state.rightLength != drawnRightLength) {
+				addArea(dirty, drawnRightX, drawnRightY, width, drawnRightLength);
+				addArea(dirty, state.rightX, state.rightY, width, state.rightLength);
+			}
+
+			// the scores, only when they change
+			if (state.leftScore != drawnLeftScore) {
+				dirty.add(leftScore.areaOf(drawnLeftScore));
+				dirty.add(leftScore.areaOf(state.leftScore));
+			}
+			if (state.rightScore != drawnRightScore) {
+				dirty.add(rightScore.areaOf(drawnRightScore));
+				dirty.add(rightScore.areaOf(state.rightScore));
+			}
+		}
+
+		drawnBefore = true;
+		drawnBallX = state.ballX;
+		drawnBallY = state.ballY;
+		drawnBallDiameter = state.ballDiameter;
+		drawnLeftX = state.leftX;
+		drawnLeftY = state.leftY;
+		drawnLeftLength = state.leftLength;
+		drawnRightX = state.rightX;
+		drawnRightY = state.rightY;
+		drawnRightLength = state.rightLength;
+		drawnLeftScore = state.leftScore;
+		drawnRightScore = state.rightScore;
+		drawnWon = state.won;
+		drawnStuck = state.stuck;
+		drawnNewRound = state.newRound;
+		drawnPaddleBorder = state.paddleBorder;
+		drawnChaos = state.chaosCount > 0;
+	}
+
+	// marks a moving thing's bounds as dirty, with a margin around them
+	private static void addArea(DirtyRegions dirty, int x, int y, int width, int height) {
+		dirty.add(x - margin, y - margin, width + 2 * margin, height + 2 * margin);
+	}
+
+	// the result a win message is for, as one number
+	private static int winKey(RenderState state) {
+		return ((state.won + 1) * 1000 + state.leftScore) * 1000 + state.rightScore;
+	}
+
+	// returns the message for the end of the game, only rendering it again if the result changed
+	private TextSprite winMessage(RenderState state) {
+		int won = state.won, left = state.leftScore, right = state.rightScore;
+		int key = winKey(state);
+		if (key != winKey) {
+			winSprite = new TextSprite((won == 1 ? "Player 2 " : "Player 1 ") + "won " + left + " : " + right + "!",
+					TextCache.MEDIUM, Color.white);
+			winKey = key;
+		}
+		return winSprite;
+	}
+
+	// Moves the drawing copies of the game objects to where the state says they are, for the next frame
+	public void update(RenderState state) {
+		ball.setLocation(state.ballX, state.ballY);
+		ball.setDiameter(state.ballDiameter);
+		ball.isRandom(state.ballRandomised);
+		if (state.ballRandomised)
+			ball.flash();
+		leftPaddle.setPosition(state.leftY, state.leftX);
+		leftPaddle.setLength(state.leftLength);
+		rightPaddle.setPosition(state.rightY, state.rightX);
+		rightPaddle.setLength(state.rightLength);
+		leftScore.value = state.leftScore;
+		rightScore.value = state.rightScore;
+	}
+
+	// call the draw methods in each class to update positions as things move
+	public void draw(Graphics g, RenderState state) {
+		int won = state.won;
+		if (won == 0) {
+			if (!state.stuck) {
+				g.setColor(Color.lightGray);
+				for (int i = 0; i < state.chaosCount; i++)
+					g.fillOval(state.chaosX[i], state.chaosY[i], state.chaosDiameter[i], state.chaosDiameter[i]);
+				ball.draw(g);
+			}
+			rightScore.draw(g);
+			leftScore.draw(g);
+		}
+		if (won == 0 || won == 1)
+			rightPaddle.draw(g);
+		if (won == 0 || won == -1)
+			leftPaddle.draw(g);
+	}
+}
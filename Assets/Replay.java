@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* Replay class plays back a match recorded by ReplayWriter
+ * Starts a World from the recorded seed and feeds it the recorded inputs on exactly the same ticks,
+ * so it goes through move() and checkCollision() just like it did the first time, bit for bit.
+ * At every checkpoint the world's hash is compared with the recorded one; the first tick where
+ * they differ is where the game stopped being deterministic.
+ * Usage: java Replay [file] [realtime]
+ * (as fast as possible unless realtime is given, in which case it runs at 60 ticks a second)
+ */
+
+public class Replay {
+
+	// In order: the recorded bytes (after the header), the world being replayed
+	private MappedByteBuffer data;
+	private World world;
+
+	// In order: ticks replayed, checkpoints that matched, checkpoints that didn't, tick of the first mismatch
+	private long ticks, matched, mismatched, firstMismatch = -1;
+
+	// Constructor, opens a recording and sets up the world it started from
+	public Replay(String file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, ReplayWriter.HEADER);
+			if (header.getInt(0) != ReplayWriter.MAGIC)
+				throw new IOException(file + " isn't a replay");
+			if (header.getInt(4) != ReplayWriter.VERSION)
+				throw new IOException(file + " is replay version " + header.getInt(4) + ", this is version "
+						+ ReplayWriter.VERSION);
+			long length = Math.min(header.getLong(16), channel.size() - ReplayWriter.HEADER);
+			data = channel.map(FileChannel.MapMode.READ_ONLY, ReplayWriter.HEADER, length);
+			world = new World(header.getLong(8));
+		}
+	}
+
+	// Replays the inputs up to and including the next tick, and checks the checkpoint after it
+	// Returns false once the recording has run out
+	public boolean step() {
+		while (data.hasRemaining()) {
+			int value = data.get() & 0xff;
+			int kind = value >>> 5, key = value & 15;
+			boolean rightPlayer = (value & 16) != 0;
+			switch (kind) {
+			case ReplayWriter.TICK:
+				world.tick();
+				ticks++;
+				if (data.remaining() >= 9 && (data.get(data.position()) & 0xff) >>> 5 == ReplayWriter.CHECKPOINT) {
+					data.get();
+					check(data.getLong());
+				}
+				return true;
+			case ReplayWriter.PRESS:
+				world.press(rightPlayer, key);
+				break;
+			case ReplayWriter.RELEASE:
+				world.release(rightPlayer, key);
+				break;
+			case ReplayWriter.NEXT_ROUND:
+				world.nextRound();
+				break;
+			case ReplayWriter.TOGGLE_RANDOMISE:
+				world.toggleRandomise();
+				break;
+			case ReplayWriter.END_GAME:
+				world.endGame();
+				break;
+			case ReplayWriter.TOGGLE_CHAOS:
+				world.toggleChaos();
+				break;
+			default:
+				throw new IllegalStateException("Unknown replay entry " + value + " after tick " + ticks);
+			}
+		}
+		return false;
+	}
+
+	// compares the world with a recorded hash
+	private void check(long hash) {
+		if (world.hash() == hash)
+			matched++;
+		else {
+			mismatched++;
+			if (firstMismatch < 0)
+				firstMismatch = ticks;
+		}
+	}
+
+	// Getter function, returns the world being replayed
+	public World getWorld() {
+		return world;
+	}
+
+	// Getter function, returns the number of ticks replayed so far
+	public long getTicks() {
+		return ticks;
+	}
+
+	// Getter function, returns the number of checkpoints that didn't match
+	public long getMismatched() {
+		return mismatched;
+	}
+
+	// Summary of how the replay went
+	public String report() {
+		String result = mismatched == 0 ? "identical"
+				: String.format("DIFFERENT from tick %d (%d bad checkpoints)", firstMismatch, mismatched);
+		return String.format("Replayed %d ticks (seed %d), score %d - %d, %d checkpoints: %s", ticks, world.getSeed(),
+				world.getScore(false).value, world.getScore(true).value, matched + mismatched, result);
+	}
+
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+		Replay replay = new Replay(args.length > 0 ? args[0] : "last.replay");
+		boolean realtime = args.length > 1 && args[1].equals("realtime");
+
+		long start = System.nanoTime();
+		if (realtime) {
+			// same pacing as the game itself, printing the score as it changes
+			FrameScheduler scheduler = new FrameScheduler();
+			scheduler.start();
+			boolean running = true;
+			while (running) {
+				for (int due = scheduler.awaitTicks(); due > 0 && running; due--) {
+					running = replay.step();
+					if ((replay.getWorld().getEvents() & (World.SCORED | World.WON)) != 0)
+						System.out.printf("%6.1f s  %d - %d%n", replay.getTicks() / (double) FrameScheduler.TICKS_PER_SECOND,
+								replay.getWorld().getScore(false).value, replay.getWorld().getScore(true).value);
+				}
+			}
+		} else
+			while (replay.step())
+				;
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(replay.report());
+		System.out.printf("Took %.3f s (%.0f ticks/s)%n", seconds, replay.getTicks() / seconds);
+		if (replay.getMismatched() != 0)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* ReplayWriter class records a match so it can be played back exactly (see Replay)
+ * A World always plays out the same way from the same seed and the same inputs on the same ticks,
+ * so the seed plus one byte per input and per tick is all it takes to get the whole match back.
+ * Every CHECKPOINT_TICKS ticks the hash of the world is written as well, so a replay can tell
+ * exactly where it stopped matching.
+ * The file is memory mapped: writing an input is just storing a byte, and whatever has been
+ * written survives the game crashing, which is usually when you want the replay most.
+ *
+ * File layout: a header of the magic number, version, seed and number of bytes recorded after it,
+ * then one byte per thing that happened: TICK (0), or an input with the kind in the top three bits,
+ * the player in the next one (1 for right) and the Paddle key in the bottom four.
+ * A CHECKPOINT byte is followed by the 8 byte world hash.
+ */
+
+public class ReplayWriter {
+
+	// In order: first four bytes of every replay ("PONG"), format version, size of the header
+	public static final int MAGIC = 0x504f4e47, VERSION = 2, HEADER = 24;
+
+	// kinds of things recorded, as the top three bits of each byte
+	public static final int TICK = 0, PRESS = 1, RELEASE = 2, NEXT_ROUND = 3, TOGGLE_RANDOMISE = 4, END_GAME = 5,
+			CHECKPOINT = 6, TOGGLE_CHAOS = 7;
+
+	// ticks between world hashes
+	public static final int CHECKPOINT_TICKS = 300;
+
+	// how much more of the file gets mapped whenever we run out of room
+	private static final int chunk = 1 << 20;
+
+	// In order: the open file, the header (kept mapped to update the length), the part being written to
+	// In order: bytes recorded after the header, ticks recorded
+	private FileChannel channel;
+	private MappedByteBuffer header, body;
+	private long length, ticks;
+
+	// Constructor, starts a new recording of a game started from seed (replacing whatever was in the file)
+	@SuppressWarnings("resource")
+	public ReplayWriter(String file, long seed) throws IOException {
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putLong(8, seed);
+		header.putLong(16, 0);
+		body = channel.map(FileChannel.MapMode.READ_WRITE, HEADER, chunk);
+	}
+
+	// records an input (one of PRESS, RELEASE, NEXT_ROUND, TOGGLE_RANDOMISE, END_GAME, TOGGLE_CHAOS)
+	public void input(int kind, boolean rightPlayer, int key) {
+		room(1);
+		body.put((byte) (kind << 5 | (rightPlayer ? 16 : 0) | key));
+		header.putLong(16, ++length);
+	}
+
+	// records the end of a tick, and the world's hash if a checkpoint is due
+	public void tick(World world) {
+		room(10);
+		body.put((byte) TICK);
+		length++;
+		if (++ticks % CHECKPOINT_TICKS == 0) {
+			body.put((byte) (CHECKPOINT << 5));
+			body.putLong(world.hash());
+			length += 9;
+		}
+		header.putLong(16, length);
+	}
+
+	// maps the next chunk of the file if there isn't room for another few bytes
+	private void room(int bytes) {
+		if (body.remaining() >= bytes)
+			return;
+		try {
+			body = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + length, chunk);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't make the replay file any bigger", e);
+		}
+	}
+
+	// finishes the recording and closes the file
+	public void close() {
+		header.force();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the mapped bytes are already written, nothing left to lose
+		}
+	}
+
+	// Getter function, returns the number of ticks recorded so far
+	public long getTicks() {
+		return ticks;
+	}
+}
@@ -0,0 +1,44 @@
+import java.util.Random;
+
+/* Rng class is a java.util.Random whose state can be read and put back
+ * It makes exactly the same numbers as Random for the same seed (same formula), but the state
+ * is a plain long, so a World can be saved and restored part way through a game (see WorldCodec)
+ * and carry on with the same random numbers it would have had.
+ * Only next() is replaced, so nextGaussian() would still keep a hidden extra number - don't use it.
+ */
+
+@SuppressWarnings("serial")
+public class Rng extends Random {
+
+	// In order: what each step multiplies by and adds, the 48 bits that are kept
+	private static final long multiplier = 0x5DEECE66DL, addend = 0xBL, mask = (1L << 48) - 1;
+
+	// no initial value here: Random's constructor calls setSeed() before this class's fields are set up
+	private long state;
+
+	// Constructor, accepts the seed (giving the same numbers as new Random(seed))
+	public Rng(long seed) {
+		super(seed);
+	}
+
+	// sets the seed, scrambled exactly like Random does
+	public synchronized void setSeed(long seed) {
+		state = (seed ^ multiplier) & mask;
+	}
+
+	// the next bits random bits
+	protected int next(int bits) {
+		state = (state * multiplier + addend) & mask;
+		return (int) (state >>> (48 - bits));
+	}
+
+	// Getter function, returns the current state (not the seed it started from)
+	public long getState() {
+		return state;
+	}
+
+	// Setter function, puts back a state from getState()
+	public void setState(long state) {
+		this.state = state;
+	}
+}
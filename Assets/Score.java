@@ -1,5 +1,3 @@
-import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 
@@ -10,10 +8,18 @@ import java.awt.Rectangle;
 @SuppressWarnings("serial")
 public class Score extends Rectangle {
 
+	// where the scores are drawn
+	private static final int leftX = (int) (World.GAME_WIDTH * 0.43), rightX = (int) (World.GAME_WIDTH * 0.52),
+			baseline = (int) (World.GAME_HEIGHT * 0.1);
+
 	// value of the score, flag to check which player
 	public int value;
 	private boolean rightPlayer;
 
+	// the value as last drawn, and what it looked like
+	private int drawnValue = -1;
+	private TextSprite sprite;
+
 	// constructor
 	public Score(boolean rightPlayer) {
 		value = 0;
@@ -21,12 +27,20 @@ public class Score extends Rectangle {
 	}
 
 	// called continuously, draws the score onto the panel
+	// (only looks up a new picture of the number when the score has changed)
 	public void draw(Graphics g) {
-		g.setColor(Color.white);
-		g.setFont(new Font("Consolas", Font.PLAIN, 30));
-		g.drawString(String.valueOf(value),
-				(int) (rightPlayer ? GamePanel.GAME_WIDTH * 0.52 : GamePanel.GAME_WIDTH * 0.43),
-				(int) (GamePanel.GAME_HEIGHT * 0.1));
+		if (value != drawnValue) {
+			sprite = TextCache.score(value);
+			drawnValue = value;
+		}
+		sprite.draw(g, rightPlayer ? rightX : leftX, baseline);
+	}
+
+	// Returns where a score of value would be drawn
+	public Rectangle areaOf(int value) {
+		TextSprite sprite = TextCache.score(value);
+		return new Rectangle(rightPlayer ? rightX : leftX, baseline - sprite.getAscent(), sprite.getWidth(),
+				sprite.getHeight());
 	}
 
 }
@@ -0,0 +1,28 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/* SlowTickEvent is a JFR event for a game tick that took much longer than usual
+ * Shows up in a flight recording under Pong, next to the GC and thread events around it
+ */
+
+@Name("pong.SlowTick")
+@Label("Slow Tick")
+@Category("Pong")
+@Description("A World tick that took longer than the slow tick threshold")
+public class SlowTickEvent extends jdk.jfr.Event {
+
+	@Label("Tick Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long tickTime;
+
+	@Label("Tick")
+	@Description("Number of the tick since the game loop started")
+	public long tick;
+
+	@Label("Events")
+	@Description("World event bits (wall, paddle, score, win) raised during the tick")
+	public int events;
+}
@@ -0,0 +1,88 @@
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/* Snapshot class turns a whole World into a fixed layout of bytes and back, for carrying on a match
+ * after the program was closed or crashed (see SnapshotRing)
+ * The body is World.write(): the ball's position, direction and speed, both paddles' positions, speeds,
+ * lengths and masses, the scores, the zone border, the randomise, stuck, new round and won flags, and
+ * the state of the random numbers - everything the match needs to carry on exactly as it would have.
+ * It is the same layout every time (chaos mode's balls are the only part that varies in length),
+ * so there is nothing to look up or skip, and it is only a couple of hundred bytes.
+ *
+ * Layout: the magic number, version, sequence number (which snapshot this is, the highest is the newest),
+ * the seed the match started from and the length of the body, then the body, then a CRC32 of
+ * everything before it, so a snapshot that was only half written when the program died is never read.
+ * VERSION goes up whenever World.write() changes, and snapshots of any other version are ignored.
+ */
+
+public class Snapshot {
+
+	// In order: first four bytes of every snapshot ("PSNP"), format version, size of the header,
+	// size of the check at the end, largest a snapshot can be
+	public static final int MAGIC = 0x50534e50, VERSION = 1, HEADER = 28, CHECK = 4,
+			MAX_SIZE = HEADER + WorldCodec.MAX_STATE + CHECK;
+
+	private Snapshot() {
+	}
+
+	// Writes a snapshot of world into out from its position (which moves past it), returns its length
+	// (crc is only used to work out the check, so one can be kept and reused)
+	public static int encode(World world, long sequence, ByteBuffer out, CRC32 crc) {
+		int start = out.position();
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		out.putLong(sequence);
+		out.putLong(world.getSeed());
+		out.putInt(0); // the length, once we know it
+		world.write(out);
+		int end = out.position();
+		out.putInt(start + HEADER - 4, end - start - HEADER);
+		out.putInt((int) check(out, start, end, crc));
+		return out.position() - start;
+	}
+
+	// Returns true if there is a whole snapshot of this version at position start of in
+	public static boolean isValid(ByteBuffer in, int start, CRC32 crc) {
+		if (in.limit() - start < HEADER + CHECK || in.getInt(start) != MAGIC || in.getInt(start + 4) != VERSION)
+			return false;
+		int length = in.getInt(start + HEADER - 4);
+		if (length < 0 || length > WorldCodec.MAX_STATE || length > in.limit() - start - HEADER - CHECK)
+			return false;
+		int end = start + HEADER + length;
+		return in.getInt(end) == (int) check(in, start, end, crc);
+	}
+
+	// Getter function, returns the sequence number of the snapshot at position start (check isValid() first)
+	public static long getSequence(ByteBuffer in, int start) {
+		return in.getLong(start + 8);
+	}
+
+	// Getter function, returns the seed of the match in the snapshot at position start (check isValid() first)
+	public static long getSeed(ByteBuffer in, int start) {
+		return in.getLong(start + 16);
+	}
+
+	// Puts world back to the snapshot at position start of in (check isValid() first); the world's
+	// seed isn't changed, so it should be a new World(getSeed()) for everything to match
+	// (leaves the buffer's position and limit alone)
+	public static void decode(ByteBuffer in, int start, World world) {
+		int position = in.position(), limit = in.limit();
+		in.limit(start + HEADER + in.getInt(start + HEADER - 4));
+		in.position(start + HEADER);
+		world.read(in);
+		in.limit(limit);
+		in.position(position);
+	}
+
+	// the CRC32 of bytes start to end of buffer (leaves its position and limit alone)
+	private static long check(ByteBuffer buffer, int start, int end, CRC32 crc) {
+		int position = buffer.position(), limit = buffer.limit();
+		buffer.limit(end);
+		buffer.position(start);
+		crc.reset();
+		crc.update(buffer);
+		buffer.limit(limit);
+		buffer.position(position);
+		return crc.getValue();
+	}
+}
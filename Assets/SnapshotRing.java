@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/* SnapshotRing class keeps the last few Snapshots of a match in a small memory mapped file
+ * The file is split into equal slots, and each snapshot overwrites the oldest one. Writing is just
+ * encoding into the mapped memory - no system call and nothing to wait for on the game thread -
+ * and the operating system has the bytes as soon as they are stored, so they survive the JVM dying.
+ * (A power cut can still lose the last few, which is what the other slots are for.)
+ * If the program dies half way through writing one, its check fails and the one before is used.
+ * restore() gives back the newest whole snapshot, so a match can carry on where it stopped.
+ */
+
+public class SnapshotRing {
+
+	// In order: the mapped file, what each snapshot is numbered by (one more than the newest in the file),
+	// the slot the next one goes in, the check worked out for each one
+	private final MappedByteBuffer map;
+	private final int slots;
+	private long sequence;
+	private int next;
+	private final CRC32 crc = new CRC32();
+
+	// Constructor, opens (or creates) the file with room for the given number of snapshots
+	public SnapshotRing(String file, int slots) throws IOException {
+		this.slots = slots;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			map = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * Snapshot.MAX_SIZE); // stays mapped
+		}
+		// carry on numbering after the newest one there, writing over the oldest (or an empty slot)
+		int newest = newest();
+		if (newest >= 0) {
+			sequence = Snapshot.getSequence(map, offset(newest)) + 1;
+			next = (newest + 1) % slots;
+		}
+	}
+
+	// Writes a snapshot of world over the oldest one in the file
+	public void write(World world) {
+		map.position(offset(next));
+		Snapshot.encode(world, sequence++, map, crc);
+		next = (next + 1) % slots;
+	}
+
+	// Returns a new World put back to the newest whole snapshot in the file, or null if there isn't one
+	public World restore() {
+		int newest = newest();
+		if (newest < 0)
+			return null;
+		World world = new World(Snapshot.getSeed(map, offset(newest)));
+		Snapshot.decode(map, offset(newest), world);
+		return world;
+	}
+
+	// the slot with the newest whole snapshot in it, -1 if none of them are
+	private int newest() {
+		int newest = -1;
+		long best = -1;
+		for (int i = 0; i < slots; i++) {
+			if (!Snapshot.isValid(map, offset(i), crc))
+				continue;
+			long number = Snapshot.getSequence(map, offset(i));
+			if (number > best) {
+				best = number;
+				newest = i;
+			}
+		}
+		return newest;
+	}
+
+	// where slot i starts in the file
+	private static int offset(int i) {
+		return i * Snapshot.MAX_SIZE;
+	}
+}
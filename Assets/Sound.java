@@ -10,38 +10,69 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 /* Sound class stores and plays sound files
  * Uses javax.sound.sampled.Clip and has four functions:
  * Play, Loop, Stop, and Set Volume
+ * A Sound from AssetCache can be handed out before its file has been decoded: until then play()
+ * does nothing, and whether it should be looping (and how loud) is remembered for when it is ready.
  */
 
 public class Sound {
 
+	// In order: the clip (null until decoded), whether loop() was called without a stop() since, volume
 	private Clip clip;
+	private boolean looping;
+	private float volume = 1;
 
 	// Initializes the Clip object with the corresponding file
 	public Sound(String file) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+		open(file);
+	}
+
+	// Constructor for a sound that is decoded later with open() (by AssetCache)
+	Sound() {
+	}
+
+	// Decodes the file into a new Clip, then catches up on anything asked of it before it was ready
+	// (the decoding happens outside the lock, so play() and stop() never wait for it)
+	void open(String file) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
 		File soundFile = new File(file);
 		AudioInputStream sound = AudioSystem.getAudioInputStream(soundFile);
-		clip = AudioSystem.getClip();
+		Clip clip = AudioSystem.getClip();
 		clip.open(sound);
+		synchronized (this) {
+			this.clip = clip;
+			if (volume != 1)
+				setVolume(volume);
+			if (looping)
+				clip.loop(Clip.LOOP_CONTINUOUSLY);
+		}
 	}
 
 	// Starts playing from the start
-	public void play() {
+	public synchronized void play() {
+		if (clip == null)
+			return; // too late to be worth playing by the time it's ready
 		clip.setFramePosition(0);
 		clip.start();
 	}
 
 	// Loops the sound forever
-	public void loop() {
-		clip.loop(Clip.LOOP_CONTINUOUSLY);
+	public synchronized void loop() {
+		looping = true;
+		if (clip != null)
+			clip.loop(Clip.LOOP_CONTINUOUSLY);
 	}
 
 	// Stops the sound
-	public void stop() {
-		clip.stop();
+	public synchronized void stop() {
+		looping = false;
+		if (clip != null)
+			clip.stop();
 	}
 	
 	// Sets volume of the clip
-	public void setVolume(float volume) {
+	public synchronized void setVolume(float volume) {
+		this.volume = volume;
+		if (clip == null)
+			return;
 	    FloatControl gainControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);        
 	    gainControl.setValue(20f * (float) Math.log10(volume));
 	}
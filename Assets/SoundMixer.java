@@ -0,0 +1,247 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/* SoundMixer class plays short sound effects on top of each other
+ * Every effect is decoded to 44.1 kHz stereo once, when it is loaded (usually by AssetCache, in the
+ * background); an id handed out before then plays silence until it is. A dedicated audio thread
+ * mixes however many of them are playing into one small SourceDataLine buffer, so a second
+ * wall hit doesn't cut off the first one.
+ * play() only drops a request into a queue and returns straight away - it never touches the
+ * sound card, so it is safe to call from the middle of a game tick.
+ * If there's no sound card the mixer quietly does nothing.
+ */
+
+public class SoundMixer implements Runnable {
+
+	// output sample rate
+	private static final float sampleRate = 44100;
+	// In order: output channels, frames mixed per write (about 6 ms)
+	private static final int channels = 2, bufferFrames = 256;
+	// In order: most effects playing at once, most requests waiting in the queue
+	private static final int maxVoices = 16, queueSize = 64;
+
+	// the one mixer everything shares
+	private static SoundMixer shared;
+
+	// In order: the line being written to (null if there is no sound card), the audio thread
+	private SourceDataLine line;
+	private Thread thread;
+
+	// In order: effects (interleaved stereo, -1 to 1, silence until decoded), the id of each file,
+	// the files load() has been asked to decode
+	private static final float[] silence = new float[0];
+	private volatile float[][] sounds = new float[0][];
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final Set<String> decoded = new HashSet<>();
+
+	// Requests from play(): which sound, how loud. Only one thread (the game thread) may add to it.
+	// head is the next request the audio thread will read, tail the next free slot for play()
+	private final int[] queuedSound = new int[queueSize];
+	private final float[] queuedVolume = new float[queueSize];
+	private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+	// Voices currently playing, only touched by the audio thread. A voiceSound of -1 means free.
+	private final int[] voiceSound = new int[maxVoices], voicePosition = new int[maxVoices];
+	private final float[] voiceVolume = new float[maxVoices];
+
+	// Getter function, returns the shared mixer, starting it the first time
+	public static synchronized SoundMixer get() {
+		if (shared == null)
+			shared = new SoundMixer();
+		return shared;
+	}
+
+	// Constructor, opens the output line and starts the audio thread
+	private SoundMixer() {
+		Arrays.fill(voiceSound, -1);
+		AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+		try {
+			line = AudioSystem.getSourceDataLine(format);
+			line.open(format, bufferFrames * 4 * format.getFrameSize());
+			line.start();
+		} catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+			line = null; // no sound card, so no sound effects
+			return;
+		}
+		thread = new Thread(this, "Sound mixer");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	// Returns the id to pass to play() for a sound file, straight away: it is silent until load() has decoded it
+	public synchronized int sound(String file) {
+		Integer id = ids.get(file);
+		if (id != null)
+			return id;
+		float[][] grown = Arrays.copyOf(sounds, sounds.length + 1);
+		grown[sounds.length] = silence;
+		sounds = grown;
+		ids.put(file, sounds.length - 1);
+		return sounds.length - 1;
+	}
+
+	// Decodes a sound file (once - loading the same file again gives back the same id without decoding it)
+	// Returns the id to pass to play(); a file that can't be decoded (missing, or not a sound) stays silent
+	public int load(String file) {
+		int id;
+		synchronized (this) {
+			id = sound(file);
+			if (!decoded.add(file))
+				return id;
+		}
+		float[] samples;
+		try {
+			samples = decode(file); // outside the lock, so sound() never waits for it
+		} catch (UnsupportedAudioFileException | IOException e) {
+			System.out.println("Couldn't load " + file + ", it will be silent: " + e.getMessage());
+			return id;
+		}
+		synchronized (this) {
+			float[][] replaced = sounds.clone();
+			replaced[id] = samples;
+			sounds = replaced;
+		}
+		return id;
+	}
+
+	// Returns whether a sound has been decoded (a sound that couldn't be is silent for good)
+	public boolean isLoaded(int sound) {
+		return sounds[sound] != silence;
+	}
+
+	// Asks for a sound to be played at the given volume (1 is as recorded). Never blocks:
+	// if the queue is somehow full, the sound is just skipped
+	public void play(int sound, float volume) {
+		if (line == null)
+			return;
+		long slot = tail.get();
+		if (slot - head.get() >= queueSize)
+			return;
+		queuedSound[(int) (slot % queueSize)] = sound;
+		queuedVolume[(int) (slot % queueSize)] = volume;
+		tail.lazySet(slot + 1);
+		LockSupport.unpark(thread);
+	}
+
+	// the audio thread: start any requested voices, mix a buffer, write it, repeat
+	// sleeps whenever nothing is playing
+	public void run() {
+		float[] mix = new float[bufferFrames * channels];
+		byte[] out = new byte[mix.length * 2];
+		while (true) {
+			startQueuedVoices();
+			if (!mixVoices(mix)) {
+				LockSupport.park(this);
+				continue;
+			}
+			for (int i = 0; i < mix.length; i++) {
+				float sample = Math.max(-1, Math.min(1, mix[i]));
+				short value = (short) (sample * 32767);
+				out[2 * i] = (byte) value;
+				out[2 * i + 1] = (byte) (value >> 8);
+			}
+			line.write(out, 0, out.length); // blocks until the sound card has room, which paces this thread
+		}
+	}
+
+	// moves requests from the queue into free voices, replacing the voice that's been playing longest if none are free
+	private void startQueuedVoices() {
+		long first = head.get(), last = tail.get();
+		for (long slot = first; slot < last; slot++) {
+			int voice = 0;
+			for (int v = 0; v < maxVoices; v++) {
+				if (voiceSound[v] == -1) {
+					voice = v;
+					break;
+				}
+				if (voicePosition[v] > voicePosition[voice])
+					voice = v;
+			}
+			voiceSound[voice] = queuedSound[(int) (slot % queueSize)];
+			voiceVolume[voice] = queuedVolume[(int) (slot % queueSize)];
+			voicePosition[voice] = 0;
+		}
+		head.lazySet(last);
+	}
+
+	// adds the next buffer of every playing voice into mix, returns false if nothing is playing
+	private boolean mixVoices(float[] mix) {
+		float[][] sounds = this.sounds;
+		boolean playing = false;
+		Arrays.fill(mix, 0);
+		for (int v = 0; v < maxVoices; v++) {
+			if (voiceSound[v] == -1)
+				continue;
+			playing = true;
+			float[] data = sounds[voiceSound[v]];
+			int position = voicePosition[v];
+			int count = Math.min(mix.length, data.length - position);
+			float volume = voiceVolume[v];
+			for (int i = 0; i < count; i++)
+				mix[i] += data[position + i] * volume;
+			voicePosition[v] = position + count;
+			if (voicePosition[v] >= data.length)
+				voiceSound[v] = -1;
+		}
+		return playing;
+	}
+
+	// reads a whole sound file and converts it to interleaved stereo floats at our sample rate
+	private static float[] decode(String file) throws UnsupportedAudioFileException, IOException {
+		AudioInputStream source = AudioSystem.getAudioInputStream(new File(file));
+		AudioFormat original = source.getFormat();
+		AudioFormat pcm = new AudioFormat(original.getSampleRate(), 16, original.getChannels(), true, false);
+		byte[] bytes;
+		try (AudioInputStream stream = AudioSystem.getAudioInputStream(pcm, source)) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] chunk = new byte[8192];
+			int read;
+			while ((read = stream.read(chunk)) > 0)
+				buffer.write(chunk, 0, read);
+			bytes = buffer.toByteArray();
+		}
+
+		int sourceChannels = pcm.getChannels();
+		int sourceFrames = bytes.length / (2 * sourceChannels);
+		if (sourceFrames == 0)
+			return new float[0];
+
+		// linear interpolation is plenty for short effects
+		double step = pcm.getSampleRate() / sampleRate;
+		int frames = (int) (sourceFrames / step);
+		float[] samples = new float[frames * channels];
+		for (int f = 0; f < frames; f++) {
+			double position = f * step;
+			int before = (int) position, after = Math.min(before + 1, sourceFrames - 1);
+			float fraction = (float) (position - before);
+			for (int c = 0; c < channels; c++) {
+				int channel = Math.min(c, sourceChannels - 1);
+				float a = sample(bytes, before * sourceChannels + channel);
+				float b = sample(bytes, after * sourceChannels + channel);
+				samples[f * channels + c] = a + (b - a) * fraction;
+			}
+		}
+		return samples;
+	}
+
+	// reads the index-th 16 bit little endian sample, scaled to -1 to 1
+	private static float sample(byte[] bytes, int index) {
+		return (short) ((bytes[2 * index] & 0xff) | (bytes[2 * index + 1] << 8)) / 32768f;
+	}
+}
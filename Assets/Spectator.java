@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/* Spectator class watches a match sent by a BroadcastServer
+ * Reads whatever has arrived on the connection, picks out the whole frames and puts its World
+ * back to the newest one: a keyframe is the whole state, a delta is applied to the last keyframe.
+ * The connection can be blocking (a thread per spectator, like the watch window) or not (lots of
+ * them on one selector, like BroadcastLoad). With no World it only keeps track of the frames, which
+ * is all a load test needs from most of its spectators.
+ */
+
+public class Spectator {
+
+	// In order: the connection, what has arrived and not been used yet (grows if a frame doesn't fit),
+	// the state in the last keyframe, the state being put together from a delta
+	private final SocketChannel channel;
+	private ByteBuffer in = ByteBuffer.allocate(2048);
+	private final ByteBuffer keyframe = ByteBuffer.allocate(WorldCodec.MAX_STATE),
+			state = ByteBuffer.allocate(WorldCodec.MAX_STATE);
+	private boolean haveKeyframe;
+
+	// the world being watched, null if the frames aren't being decoded
+	private final World world;
+
+	// In order: frames and keyframes received, the tick of the newest one, how long frames took to get here
+	// (from being published to being read, in nanoseconds - only meaningful with the server on this computer)
+	private long frames, keyframes, tick = -1;
+	private final Histogram lag = new Histogram();
+
+	// Constructor, accepts the connection to the server and the World to keep up to date (null for none)
+	public Spectator(SocketChannel channel, World world) {
+		this.channel = channel;
+		this.world = world;
+	}
+
+	// Reads what has arrived (waiting for something if the connection blocks, otherwise everything there is)
+	// and applies every whole frame, returns false once the server has hung up
+	public boolean read() throws IOException {
+		return read(Integer.MAX_VALUE);
+	}
+
+	// The same as read(), but takes at most the given number of bytes, like a slow connection would
+	public boolean read(int most) throws IOException {
+		int read;
+		do {
+			if (in.position() == in.capacity()) {
+				// a frame bigger than the buffer, so make room for it
+				ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+				in.flip();
+				bigger.put(in);
+				in = bigger;
+			}
+			in.limit((int) Math.min(in.capacity(), (long) in.position() + most));
+			read = channel.read(in);
+			if (read < 0)
+				return false;
+			most -= read;
+			long now = System.nanoTime();
+			in.flip();
+			while (in.remaining() >= 4 && in.remaining() >= in.getInt(in.position()) + 4) {
+				int start = in.position(), end = start + in.getInt(start) + 4;
+				frame(in.get(start + 4), in.getLong(start + 5), in.getLong(start + 13),
+						start + BroadcastServer.FRAME_HEADER, end, now);
+				in.position(end);
+			}
+			in.compact();
+		} while (read > 0 && most > 0 && !channel.isBlocking());
+		return true;
+	}
+
+	// applies one frame: bytes from to end of in (leaves in's position and limit as they were)
+	private void frame(byte kind, long tick, long published, int from, int end, long now) {
+		frames++;
+		this.tick = tick;
+		lag.record(now - published);
+		int limit = in.limit(), position = in.position();
+		in.limit(end);
+		in.position(from);
+		if (kind == BroadcastServer.KEYFRAME) {
+			keyframes++;
+			keyframe.clear();
+			keyframe.put(in);
+			keyframe.flip();
+			haveKeyframe = true;
+			if (world != null)
+				WorldCodec.decode(world, keyframe);
+		} else if (haveKeyframe && world != null) {
+			WorldCodec.undelta(keyframe, in, state);
+			WorldCodec.decode(world, state);
+		}
+		in.limit(limit);
+		in.position(position);
+	}
+
+	// Getter function, returns the world being watched (null if frames aren't decoded)
+	public World getWorld() {
+		return world;
+	}
+
+	// Getter function, returns the tick of the newest frame, -1 before the first
+	public long getTick() {
+		return tick;
+	}
+
+	// Getter function, returns the number of frames received
+	public long getFrames() {
+		return frames;
+	}
+
+	// Getter function, returns the number of keyframes received
+	public long getKeyframes() {
+		return keyframes;
+	}
+
+	// Getter function, returns how long frames took from being published to being read, in nanoseconds
+	public Histogram getLag() {
+		return lag;
+	}
+
+	// Closes the connection
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,54 @@
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+import javax.swing.JPanel;
+
+/* SpectatorPanel class shows a match someone else is playing, sent by their BroadcastServer
+ * A thread reads the frames as they come in and hands a RenderState of each over to paint() through
+ * a StateBuffer, the same way the game thread does in GamePanel. There are no keys and no sound,
+ * it only watches.
+ * Child of JPanel because JPanel contains methods for drawing to the screen
+ */
+
+@SuppressWarnings("serial")
+public class SpectatorPanel extends JPanel implements Runnable {
+
+	// In order: the connection, the match as last received, the copies handed over for drawing, what draws them
+	private final Spectator spectator;
+	private final World world = new World(0);
+	private final StateBuffer states = new StateBuffer();
+	private final Renderer renderer = new Renderer();
+
+	// Constructor, accepts where the match is being broadcast from, and connects to it
+	public SpectatorPanel(String host, int port) throws IOException {
+		spectator = new Spectator(SocketChannel.open(new InetSocketAddress(host, port)), world);
+		states.back().copyFrom(world);
+		states.publish();
+		this.setPreferredSize(new Dimension(World.GAME_WIDTH, World.GAME_HEIGHT));
+		Thread thread = new Thread(this, "Spectator");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// reads frames until the match goes away, handing each one over to be drawn
+	public void run() {
+		try {
+			while (spectator.read()) {
+				states.back().copyFrom(world);
+				states.publish();
+				repaint();
+			}
+			System.out.println("The match isn't being broadcast any more");
+		} catch (IOException e) {
+			System.out.println("Lost the match: " + e.getMessage());
+		}
+	}
+
+	// draws the latest frame (Swing double buffers it for us)
+	public void paint(Graphics g) {
+		renderer.render(g, states.latest());
+	}
+}
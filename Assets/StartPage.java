@@ -1,6 +1,5 @@
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.event.KeyEvent;
@@ -20,12 +19,12 @@ import javax.swing.JPanel;
 public class StartPage extends JPanel implements KeyListener {
 
 	private Image image;
-	private Graphics graphics;
 	private Sound background;
 
 	public StartPage() throws UnsupportedAudioFileException, IOException, LineUnavailableException {
 
-		background = new Sound("StartBackground.wav");
+		// the music starts as soon as the background thread has decoded it, the page doesn't wait for it
+		background = AssetCache.sound("StartBackground.wav");
 		background.loop();
 		this.setFocusable(true); // make everything in this class appear on the screen
 		this.addKeyListener(this); // start listening for keyboard input
@@ -36,22 +35,37 @@ public class StartPage extends JPanel implements KeyListener {
 	// method - it is called automatically in the background in order to update what
 	// appears in the window. You NEVER call paint() yourself
 	public void paint(Graphics g) {
-		image = createImage(GamePanel.GAME_WIDTH, GamePanel.GAME_HEIGHT); // draw off screen
-		graphics = image.getGraphics();
-		graphics.setColor(Color.white);
-		graphics.setFont(new Font("Consolas", Font.PLAIN, 15));
-		graphics.drawString("Welcome to Modified Pong!", (int) (GamePanel.GAME_WIDTH * 0.15),
-				(int) (GamePanel.GAME_HEIGHT * 0.2));
-		graphics.drawString("Controls:", (int) (GamePanel.GAME_WIDTH * 0.15), (int) (GamePanel.GAME_HEIGHT * 0.3));
-		graphics.drawString("Player 1: WASD", (int) (GamePanel.GAME_WIDTH * 0.15), (int) (GamePanel.GAME_HEIGHT * 0.4));
-		graphics.drawString("Player 2: Arrow keys", (int) (GamePanel.GAME_WIDTH * 0.15),
-				(int) (GamePanel.GAME_HEIGHT * 0.5));
-		graphics.drawString("Toggle randomisation: r", (int) (GamePanel.GAME_WIDTH * 0.15),
-				(int) (GamePanel.GAME_HEIGHT * 0.6));
-		graphics.drawString("Skip round: n", (int) (GamePanel.GAME_WIDTH * 0.15), (int) (GamePanel.GAME_HEIGHT * 0.7));
-		graphics.drawString("Press any key to begin!", (int) (GamePanel.GAME_WIDTH * 0.15),
-				(int) (GamePanel.GAME_HEIGHT * 0.8));
+		// the page never changes, so it is laid out and drawn once and reused after that
+		if (image == null) {
+			image = createImage(GamePanel.GAME_WIDTH, GamePanel.GAME_HEIGHT); // draw off screen, once
+			Graphics graphics = image.getGraphics();
+			graphics.setColor(Color.black);
+			graphics.fillRect(0, 0, GamePanel.GAME_WIDTH, GamePanel.GAME_HEIGHT);
+			graphics.setColor(Color.white);
+			graphics.setFont(TextCache.MEDIUM);
+			graphics.drawString("Welcome to Modified Pong!", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.15));
+			graphics.drawString("Controls:", (int) (GamePanel.GAME_WIDTH * 0.15), (int) (GamePanel.GAME_HEIGHT * 0.25));
+			graphics.drawString("Player 1: WASD", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.33));
+			graphics.drawString("Player 2: Arrow keys", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.41));
+			graphics.drawString("Toggle randomisation: r", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.49));
+			graphics.drawString("Skip round: n", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.57));
+			graphics.drawString("Chaos mode: c", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.65));
+			graphics.drawString("Computer opponent: i", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.73));
+			graphics.drawString("Pause: p", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.81));
+			graphics.drawString("Press any key to begin!", (int) (GamePanel.GAME_WIDTH * 0.15),
+					(int) (GamePanel.GAME_HEIGHT * 0.92));
+			graphics.dispose();
+		}
 		g.drawImage(image, 0, 0, this); // move the image on the screen
+		Main.firstFrame();
 
 	}
 
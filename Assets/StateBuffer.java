@@ -0,0 +1,37 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* StateBuffer class passes RenderStates from the game thread to whoever draws them, without locks
+ * Triple buffering: the writer fills the back state and swaps it into the middle, the reader swaps
+ * the middle into the front whenever there's something new. Each side only ever touches its own
+ * state, the swaps are single atomic operations, and neither side ever waits for the other.
+ * There must only be one writer and one reader at a time.
+ */
+
+public class StateBuffer {
+
+	// set in the middle index when the writer has published something the reader hasn't seen
+	private static final int fresh = 4;
+
+	// In order: the three states, index of the middle one (plus the fresh bit)
+	// In order: index of the writer's state, index of the reader's state
+	private final RenderState[] states = { new RenderState(), new RenderState(), new RenderState() };
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0, front = 2;
+
+	// Writer: returns the state to fill in next
+	public RenderState back() {
+		return states[back];
+	}
+
+	// Writer: makes the state from back() the latest one, and gets a new one to fill in
+	public void publish() {
+		back = middle.getAndSet(back | fresh) & 3;
+	}
+
+	// Reader: returns the most recently published state (the same one again if nothing new came in)
+	public RenderState latest() {
+		if ((middle.get() & fresh) != 0)
+			front = middle.getAndSet(front) & 3;
+		return states[front];
+	}
+}
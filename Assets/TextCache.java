@@ -0,0 +1,40 @@
+import java.awt.Color;
+import java.awt.Font;
+
+/* TextCache class holds the fonts and pre-rendered text everything else draws with
+ * Fonts are created once and shared, and the scores 0-10 and the fixed messages are
+ * rendered into TextSprites the first time this class is used.
+ */
+
+public class TextCache {
+
+	// the fonts used in the game, smallest to largest
+	public static final Font SMALL = new Font("Consolas", Font.PLAIN, 10);
+	public static final Font MEDIUM = new Font("Consolas", Font.PLAIN, 15);
+	public static final Font LARGE = new Font("Consolas", Font.PLAIN, 30);
+
+	// the messages shown over the game
+	public static final TextSprite STUCK = new TextSprite("Ball stuck! Press n to move on.", SMALL, Color.white);
+	public static final TextSprite NEXT_ROUND = new TextSprite("Press n to start the next round.", SMALL,
+			Color.white);
+	public static final TextSprite PAUSED = new TextSprite("Paused. Press p to carry on.", SMALL, Color.white);
+	public static final TextSprite NEW_GAME = new TextSprite("Press n to start a new game.", MEDIUM, Color.white);
+
+	// every score a game can end on
+	private static final TextSprite[] scores = new TextSprite[World.WINNING_SCORE + 1];
+
+	static {
+		for (int i = 0; i < scores.length; i++)
+			scores[i] = new TextSprite(String.valueOf(i), LARGE, Color.white);
+	}
+
+	private TextCache() {
+	}
+
+	// Getter function, returns the sprite for a score (only scores past 10 get rendered on the spot)
+	public static TextSprite score(int value) {
+		if (value >= 0 && value < scores.length)
+			return scores[value];
+		return new TextSprite(String.valueOf(value), LARGE, Color.white);
+	}
+}
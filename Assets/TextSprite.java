@@ -0,0 +1,55 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/* TextSprite class is a piece of text laid out and drawn into an image once,
+ * so putting it on screen again is just a drawImage instead of font lookup and glyph layout
+ */
+
+public class TextSprite {
+
+	// In order: the rendered text, how far the baseline is from the top of the image
+	private BufferedImage image;
+	private int ascent;
+
+	// Constructor, renders the text in the given font and colour
+	public TextSprite(String text, Font font, Color color) {
+		// need a graphics object just to measure the text
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D measure = scratch.createGraphics();
+		FontMetrics metrics = measure.getFontMetrics(font);
+		measure.dispose();
+
+		ascent = metrics.getAscent();
+		image = new BufferedImage(Math.max(1, metrics.stringWidth(text)),
+				Math.max(1, metrics.getAscent() + metrics.getDescent()), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setFont(font);
+		graphics.setColor(color);
+		graphics.drawString(text, 0, ascent);
+		graphics.dispose();
+	}
+
+	// Draws the text with its baseline at y, the same way drawString(text, x, y) would
+	public void draw(Graphics g, int x, int y) {
+		g.drawImage(image, x, y - ascent, null);
+	}
+
+	// Getter function, returns the width of the text in pixels
+	public int getWidth() {
+		return image.getWidth();
+	}
+
+	// Getter function, returns the height of the text in pixels
+	public int getHeight() {
+		return image.getHeight();
+	}
+
+	// Getter function, returns how far the baseline is from the top of the text
+	public int getAscent() {
+		return ascent;
+	}
+}
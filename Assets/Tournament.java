@@ -0,0 +1,224 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Tournament class plays huge numbers of matches on every core, for balancing the game
+ * Matches are plain Worlds stepped in a loop - no window, no sound, no thread per match.
+ * The matches are split in halves over and over into ForkJoin tasks, each with its own
+ * random numbers split off its parent's, so a seed always gives the same results however the
+ * work ends up spread over the threads. Each batch of matches counts up its results on its own
+ * and adds them to shared LongAdders once at the end, so the threads never wait for each other.
+ * Usage: java Tournament [matches] [seed] [threads or "scale"] [friction] [randomise] [left] [right]
+ * ("scale" plays the same tournament on 1, 2, 4... threads up to the number of cores and compares them;
+ * left and right are "tracking" for a TrackingController or easy, medium, hard or perfect for an AiController)
+ */
+
+public class Tournament {
+
+	// In order: fewest matches worth giving their own task, longest a match may go on (ten minutes of game time)
+	private static final int batch = 64;
+	private static final long maxTicks = 60L * 60 * 10;
+
+	// rallies (paddle hits in one point) this long or longer are all counted together
+	private static final int longestRally = 64;
+
+	// a player that is a TrackingController rather than an AiController of some difficulty
+	public static final int TRACKING = -1;
+
+	// names of the players on the command line (TRACKING, then each AiController difficulty)
+	private static final String[] players = { "tracking", "easy", "medium", "hard", "perfect" };
+	// chance of a TrackingController missing
+	private static final double missChance = 0.7;
+
+	// In order: number of matches, seed, friction, whether randomised mode is on, left and right players
+	private final int matches;
+	private final long seed;
+	private final double friction;
+	private final boolean randomise;
+	private final int leftPlayer, rightPlayer;
+
+	// Results, added to from every thread
+	private final LongAdder leftWins = new LongAdder(), rightWins = new LongAdder(), unfinished = new LongAdder(),
+			ticks = new LongAdder(), points = new LongAdder(), paddleHits = new LongAdder();
+	private final LongAdder[] rallies = new LongAdder[longestRally + 1];
+
+	// Constructor, accepts the number of matches, the seed and the settings to play them with
+	// (each player is TRACKING or an AiController difficulty)
+	public Tournament(int matches, long seed, double friction, boolean randomise, int leftPlayer, int rightPlayer) {
+		this.matches = matches;
+		this.seed = seed;
+		this.friction = friction;
+		this.randomise = randomise;
+		this.leftPlayer = leftPlayer;
+		this.rightPlayer = rightPlayer;
+		for (int i = 0; i < rallies.length; i++)
+			rallies[i] = new LongAdder();
+	}
+
+	// plays every match on the given pool and waits for them all, returns how long it took in seconds
+	public double run(ForkJoinPool pool) {
+		long start = System.nanoTime();
+		pool.invoke(new Matches(0, matches, new SplittableRandom(seed)));
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+	// A range of matches: split in two until it's small enough, then played on the spot
+	@SuppressWarnings("serial")
+	private class Matches extends RecursiveAction {
+
+		// In order: first match, one after the last match, random numbers for this range only
+		private final int from, to;
+		private final SplittableRandom random;
+
+		Matches(int from, int to, SplittableRandom random) {
+			this.from = from;
+			this.to = to;
+			this.random = random;
+		}
+
+		protected void compute() {
+			if (to - from > batch) {
+				int middle = (from + to) >>> 1;
+				// split the random numbers before forking, so each half gets the same ones every time
+				invokeAll(new Matches(from, middle, random.split()), new Matches(middle, to, random.split()));
+				return;
+			}
+
+			// counted here and only added to the shared totals once, at the end of the batch
+			long leftWins = 0, rightWins = 0, unfinished = 0, ticks = 0, points = 0, paddleHits = 0;
+			long[] rallies = new long[longestRally + 1];
+			for (int i = from; i < to; i++) {
+				World world = new World(random.nextLong());
+				world.setFriction(friction);
+				if (randomise) {
+					world.toggleRandomise();
+					world.nextRound();
+				}
+				Controller left = controller(leftPlayer, random.nextLong());
+				Controller right = controller(rightPlayer, random.nextLong());
+
+				long matchTicks = 0;
+				int rally = 0;
+				while (world.getWon() == 0 && matchTicks < maxTicks) {
+					// nobody needs to press n here, just carry straight on
+					if (world.isStuck() || world.isNewRound()) {
+						world.nextRound();
+						rally = 0;
+					}
+					left.update(world, false);
+					right.update(world, true);
+					world.tick();
+					matchTicks++;
+
+					int events = world.getEvents();
+					if ((events & World.HIT_PADDLE) != 0) {
+						rally++;
+						paddleHits++;
+					}
+					if ((events & (World.SCORED | World.WON)) != 0) {
+						rallies[Math.min(rally, longestRally)]++;
+						points++;
+						rally = 0;
+					}
+				}
+				ticks += matchTicks;
+				if (world.getWon() == 1)
+					rightWins++;
+				else if (world.getWon() == -1)
+					leftWins++;
+				else
+					unfinished++;
+			}
+
+			Tournament.this.leftWins.add(leftWins);
+			Tournament.this.rightWins.add(rightWins);
+			Tournament.this.unfinished.add(unfinished);
+			Tournament.this.ticks.add(ticks);
+			Tournament.this.points.add(points);
+			Tournament.this.paddleHits.add(paddleHits);
+			for (int r = 0; r <= longestRally; r++)
+				if (rallies[r] != 0)
+					Tournament.this.rallies[r].add(rallies[r]);
+		}
+	}
+
+	// Returns a new controller for a player (TRACKING or an AiController difficulty)
+	private static Controller controller(int player, long seed) {
+		if (player == TRACKING)
+			return new TrackingController(missChance, seed);
+		return new AiController(player, seed);
+	}
+
+	// Returns the player (TRACKING or an AiController difficulty) with the given name
+	private static int player(String name) {
+		for (int i = 0; i < players.length; i++)
+			if (players[i].equalsIgnoreCase(name))
+				return i - 1;
+		throw new IllegalArgumentException("No player called " + name + ", try tracking, easy, medium, hard or perfect");
+	}
+
+	// Returns the rally length that fraction (0 to 1) of points were shorter than or equal to
+	private int rallyPercentile(double fraction) {
+		long total = points.sum(), seen = 0;
+		for (int r = 0; r <= longestRally; r++) {
+			seen += rallies[r].sum();
+			if (seen >= fraction * total)
+				return r;
+		}
+		return longestRally;
+	}
+
+	// Summary of the results
+	public String report() {
+		long played = leftWins.sum() + rightWins.sum() + unfinished.sum();
+		long points = this.points.sum();
+		return String.format(
+				"%d matches, %d ticks: left won %.2f%%, right won %.2f%%, %d unfinished%n"
+						+ "%.1f points per match, %.1f s of play per match, rallies avg %.2f hits, median %d, 90%% %d, 99%% %d",
+				played, ticks.sum(), 100.0 * leftWins.sum() / played, 100.0 * rightWins.sum() / played,
+				unfinished.sum(), (double) points / played, ticks.sum() / (double) played / FrameScheduler.TICKS_PER_SECOND,
+				points == 0 ? 0 : (double) paddleHits.sum() / points, rallyPercentile(0.5), rallyPercentile(0.9),
+				rallyPercentile(0.99));
+	}
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		String threads = args.length > 2 ? args[2] : String.valueOf(Runtime.getRuntime().availableProcessors());
+		double friction = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+		boolean randomise = args.length > 4 && Boolean.parseBoolean(args[4]);
+		int left = player(args.length > 5 ? args[5] : "tracking");
+		int right = player(args.length > 6 ? args[6] : "tracking");
+
+		if (!threads.equals("scale")) {
+			Tournament tournament = new Tournament(matches, seed, friction, randomise, left, right);
+			ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(threads));
+			double seconds = tournament.run(pool);
+			pool.shutdown();
+			System.out.printf("%d threads: %.2f s, %.0f matches/s%n", pool.getParallelism(), seconds,
+					matches / seconds);
+			System.out.println(tournament.report());
+			return;
+		}
+
+		// the same tournament on more and more threads; each one should be nearly that many times faster
+		double single = 0;
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int parallelism = 1;; parallelism = Math.min(parallelism * 2, cores)) {
+			Tournament tournament = new Tournament(matches, seed, friction, randomise, left, right);
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			double seconds = tournament.run(pool);
+			pool.shutdown();
+			if (parallelism == 1)
+				single = seconds;
+			System.out.printf("%d threads: %.2f s, %.0f matches/s, %.2fx one thread (%.0f%% efficient)%n", parallelism,
+					seconds, matches / seconds, single / seconds, 100 * single / seconds / parallelism);
+			if (parallelism == cores) {
+				System.out.println(tournament.report());
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+import java.util.Random;
+
+/* TrackingController class is a simple scripted player
+ * Keeps the middle of its paddle level with the ball, but every time the ball heads
+ * its way there is a chance it just doesn't bother, so that games actually end.
+ * If the ball comes to a stop on its side it walks over and pushes it back into play.
+ */
+
+public class TrackingController implements Controller {
+
+	// how far (in pixels) the ball can be from the middle of the paddle before it moves
+	private static final double deadZone = 5;
+
+	// In order: chance of ignoring the ball for a whole approach, random numbers for that decision
+	// In order: whether the ball was heading our way last tick, whether we are ignoring it this time
+	private double missChance;
+	private Random random;
+	private boolean approaching, ignoring;
+
+	// Constructor, accepts the chance of missing and a seed for the random numbers
+	public TrackingController(double missChance, long seed) {
+		this.missChance = missChance;
+		random = new Random(seed);
+	}
+
+	public void update(World world, boolean rightPlayer) {
+		Ball ball = world.getBall();
+		Paddle paddle = world.getPaddle(rightPlayer);
+
+		// decide once per approach whether to play this ball
+		boolean towards = rightPlayer == (ball.getDirectionX() > 0);
+		if (towards && !approaching)
+			ignoring = random.nextDouble() < missChance;
+		approaching = towards;
+
+		// a ball that stopped in our zone won't get reset, so go and hit it
+		// (touching it from either side knocks it back out in front of the paddle)
+		if (ball.getSpeed() == 0 && !world.isWaiting()) {
+			boolean ahead = ball.getCurrentX() + ball.getDiameter() / 2.0 > paddle.getLeft();
+			world.release(rightPlayer, ahead ? Paddle.LEFT : Paddle.RIGHT);
+			world.press(rightPlayer, ahead ? Paddle.RIGHT : Paddle.LEFT);
+		} else {
+			world.release(rightPlayer, Paddle.LEFT);
+			world.release(rightPlayer, Paddle.RIGHT);
+		}
+
+		boolean playing = !ignoring || ball.getSpeed() == 0;
+		double target = ball.getCurrentY() + ball.getDiameter() / 2.0;
+		double middle = paddle.getTop() + paddle.getLength() / 2.0;
+		if (playing && target < middle - deadZone) {
+			world.release(rightPlayer, Paddle.DOWN);
+			world.press(rightPlayer, Paddle.UP);
+		} else if (playing && target > middle + deadZone) {
+			world.release(rightPlayer, Paddle.UP);
+			world.press(rightPlayer, Paddle.DOWN);
+		} else {
+			world.release(rightPlayer, Paddle.UP);
+			world.release(rightPlayer, Paddle.DOWN);
+		}
+	}
+}
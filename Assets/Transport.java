@@ -0,0 +1,21 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* Transport interface is whatever carries NetSession's packets to the other player
+ * Packets may arrive late, out of order, or not at all - NetSession copes with all of that.
+ * UdpTransport sends them over the network, LoopbackTransport hands them straight to another
+ * NetSession in the same program (with made up latency, jitter and loss) for trying things out.
+ */
+
+public interface Transport {
+
+	// sends the bytes between the buffer's position and limit as one packet, never blocks
+	void send(ByteBuffer packet) throws IOException;
+
+	// puts the next packet that has arrived into the buffer (from position 0, flipped ready to read)
+	// returns false straight away if nothing has arrived
+	boolean receive(ByteBuffer packet) throws IOException;
+
+	// stops sending and receiving
+	void close() throws IOException;
+}
@@ -0,0 +1,54 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/* UdpTransport class carries packets between two computers over UDP
+ * The host listens on a port and talks to whoever sends it something first; the other player
+ * sends straight to the host. The channel never blocks, so it can be used from the game loop.
+ */
+
+public class UdpTransport implements Transport {
+
+	// In order: the socket, where the other player is (null until the host hears from them)
+	private DatagramChannel channel;
+	private SocketAddress peer;
+
+	// Constructor for the host, accepts the port to listen on
+	public UdpTransport(int port) throws IOException {
+		channel = DatagramChannel.open();
+		channel.bind(new InetSocketAddress(port));
+		channel.configureBlocking(false);
+	}
+
+	// Constructor for joining a host, accepts its address and port
+	public UdpTransport(String host, int port) throws IOException {
+		channel = DatagramChannel.open();
+		channel.bind(null);
+		channel.configureBlocking(false);
+		peer = new InetSocketAddress(host, port);
+	}
+
+	public void send(ByteBuffer packet) throws IOException {
+		if (peer != null)
+			channel.send(packet, peer);
+	}
+
+	public boolean receive(ByteBuffer packet) throws IOException {
+		packet.clear();
+		SocketAddress from = channel.receive(packet);
+		if (from == null)
+			return false;
+		if (peer == null)
+			peer = from; // the host answers whoever turned up first
+		else if (!peer.equals(from))
+			return receive(packet); // somebody else, ignore them
+		packet.flip();
+		return true;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+}
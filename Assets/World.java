@@ -0,0 +1,617 @@
+import java.nio.ByteBuffer;
+
+/* World class holds the state and rules of a game of pong - the ball, the paddles, the scores,
+ * friction and the paddle zones - without any window, sound or thread attached.
+ * GamePanel owns one and draws it, but it can just as well be stepped on its own,
+ * as fast as the CPU allows (see Headless).
+ * Anything worth making a noise about during a tick is reported through getEvents().
+ * Every random choice comes from one seeded Rng, so the same seed and the same inputs
+ * on the same ticks always play out exactly the same game (see ReplayWriter and Replay).
+ * The whole state can be written out and read back part way through a game (see WorldCodec).
+ */
+
+public class World {
+
+	// dimensions of the playing field
+	public static final int GAME_WIDTH = 300;
+	public static final int GAME_HEIGHT = 300;
+
+	// score needed to win a game
+	public static final int WINNING_SCORE = 10;
+
+	// events that can happen during a tick, as bits of getEvents()
+	public static final int HIT_WALL = 1, HIT_PADDLE = 2, SCORED = 4, WON = 8;
+
+	// friction, taken off the ball's speed every tick (0.01 unless changed with setFriction())
+	private double friction = 0.01;
+
+	// most things the ball can bounce off in one tick before we give up on the rest of its movement
+	private static final int maxContacts = 8;
+
+	// In order: balls in chaos mode, their smallest and largest diameter, their slowest and fastest speed
+	private static final int chaosBalls = 500;
+	private static final double chaosMinDiameter = 4, chaosMaxDiameter = 8, chaosMinSpeed = 1, chaosMaxSpeed = 3;
+
+	// which surface the ball reached first while sweeping it along its path
+	private static final int NOTHING = 0, RIGHT_PADDLE = 1, LEFT_PADDLE = 2, TOP_WALL = 3, BOTTOM_WALL = 4;
+
+	// Objects in game
+	private Ball ball;
+	private Paddle rightPaddle, leftPaddle;
+	private Score rightScore, leftScore;
+
+	// Constants
+	// won is 1 if the right player won, -1 if the left player won, 0 otherwise
+	private int paddleBorder, won, events;
+	private boolean randomise, disable, stuck, newRound;
+
+	// goes up every time the ball and paddles are put back for a new round or game
+	private int round;
+
+	// works out when the ball touches a paddle
+	private Collision collision = new Collision();
+
+	// the extra balls bouncing around in chaos mode, null when it's off
+	private BallField chaos;
+
+	// In order: the seed this game was started from, where every random choice comes from
+	private long seed;
+	private Rng random;
+
+	// records the inputs and ticks of this match, if anyone asked for it
+	private ReplayWriter recorder;
+
+	// Constructor, starts a game from a seed picked from the clock
+	public World() {
+		this(System.nanoTime());
+	}
+
+	// Constructor, starts a game from the given seed
+	public World(long seed) {
+		newGame(seed);
+	}
+
+	// Starts a whole new game from the given seed, in place: everything is as it would be in
+	// new World(seed) apart from the friction, which stays as it was set
+	// (a recording in progress is finished, see endGame())
+	// The Ball, Paddles and Scores are made once and then reused, so starting over never allocates anything
+	public void newGame(long seed) {
+		stopRecording();
+		this.seed = seed;
+		if (random == null) {
+			random = new Rng(seed);
+			ball = new Ball(0, 0);
+			rightPaddle = new Paddle(true);
+			leftPaddle = new Paddle(false);
+			rightScore = new Score(true);
+			leftScore = new Score(false);
+		} else
+			random.setSeed(seed);
+
+		// Initialize constants
+		paddleBorder = 45;
+		randomise = false;
+		disable = false;
+		won = 0;
+		events = 0;
+		stuck = false;
+		newRound = false;
+		chaos = null;
+
+		// create a ball, randomize starting side, angle
+		boolean flag = random.nextDouble() < 0.5;
+		ball.reset(flag ? 30 : GAME_WIDTH - 30 - Ball.getInitialDiameter() / 2,
+				GAME_HEIGHT / 2 - Ball.getInitialDiameter());
+		ball.setAngle(flag ? convertAngle((random.nextDouble() - 0.5) * Math.PI / 2.0)
+				: convertAngle((random.nextDouble() - 0.5) * Math.PI / 2.0 + Math.PI));
+
+		// the two player paddles
+		rightPaddle.reset();
+		leftPaddle.reset();
+
+		// the two score counts
+		rightScore.value = 0;
+		leftScore.value = 0;
+		round++;
+	}
+
+	// runs one 1/60 s step of the game: movement, collisions and friction
+	public void tick() {
+		events = 0;
+		move();
+		checkCollision();
+		if (chaos != null)
+			chaos.tick(leftPaddle, rightPaddle);
+
+		// constant friction
+		if (ball.getSpeed() - friction >= 0)
+			ball.slowDown(friction);
+
+		// if the ball is still and no paddle can reach it, then make it a tie and reset
+		// (exact positions, since a swept ball can come to rest right against a zone border)
+		else {
+			ball.setSpeed(0);
+			if (ball.getCurrentX() >= paddleBorder
+					&& ball.getCurrentX() + ball.getDiameter() <= GAME_WIDTH - paddleBorder) {
+				stuck = true;
+				disable = true;
+			}
+		}
+
+		if (recorder != null)
+			recorder.tick(this);
+	}
+
+	// resets objects to default settings
+	public void reset() {
+
+		paddleBorder = 45;
+
+		boolean flag = random.nextDouble() < 0.5;
+		ball.reset(flag ? 30 : GAME_WIDTH - 30 - Ball.getInitialDiameter() / 2,
+				GAME_HEIGHT / 2 - Ball.getInitialDiameter());
+		ball.setAngle(flag ? convertAngle((random.nextDouble() - 0.5) * Math.PI / 2.0)
+				: convertAngle((random.nextDouble() - 0.5) * Math.PI / 2.0 + Math.PI));
+		ball.isRandom(randomise);
+
+		rightPaddle.reset();
+		leftPaddle.reset();
+		round++;
+
+		if (randomise)
+			randomise();
+
+	}
+
+	// randomises different aspects of the game
+	public void randomise() {
+		paddleBorder = (int) (random.nextDouble() * 75) + 20;
+		ball.setSpeed(random.nextDouble() * 6 + 2.5);
+		ball.setDiameter((int) (random.nextDouble() * 30) + 10);
+		rightPaddle.setLength((int) (random.nextDouble() * 30) + 15);
+		leftPaddle.setLength((int) (random.nextDouble() * 30) + 15);
+	}
+
+	// call the move methods in other classes to update positions
+	// this method is called every tick. By doing this, movements appear
+	// fluid and natural. If we take this out the movements appear sluggish and
+	// laggy
+	// The paddles move first, then the ball is swept along its path so that it
+	// bounces off anything it would have touched on the way, however fast it is
+	public void move() {
+		rightPaddle.move();
+		leftPaddle.move();
+		keepPaddlesInZones();
+		sweepBall();
+	}
+
+	// moves the ball through one tick, stopping at every paddle or wall it touches on the way
+	// (a fast ball would otherwise go straight through a 2 pixel paddle between two ticks)
+	private void sweepBall() {
+		double remaining = 1;
+		for (int contact = 0; contact < maxContacts && remaining > 0; contact++) {
+			double r = ball.getDiameter() / 2.0;
+			double x = ball.getCurrentX() + r, y = ball.getCurrentY() + r;
+			double dx = ball.getVelocityX() * remaining;
+			double dy = ball.getVelocityY() * remaining;
+
+			// find whatever the ball reaches first
+			int surface = NOTHING;
+			double first = 1, normalX = 0, normalY = 0;
+			if (collision.sweep(x, y, r, dx, dy, rightPaddle.getLeft(), rightPaddle.getTop(), rightPaddle.getRight(),
+					rightPaddle.getBottom()) && collision.getTime() <= first) {
+				surface = RIGHT_PADDLE;
+				first = collision.getTime();
+				normalX = collision.getNormalX();
+				normalY = collision.getNormalY();
+			}
+			if (collision.sweep(x, y, r, dx, dy, leftPaddle.getLeft(), leftPaddle.getTop(), leftPaddle.getRight(),
+					leftPaddle.getBottom()) && collision.getTime() <= first) {
+				surface = LEFT_PADDLE;
+				first = collision.getTime();
+				normalX = collision.getNormalX();
+				normalY = collision.getNormalY();
+			}
+			if (dy < 0 && y - r + dy < 0 && Math.max(0, (r - y) / dy) <= first) {
+				surface = TOP_WALL;
+				first = Math.max(0, (r - y) / dy);
+			}
+			if (dy > 0 && y + r + dy > GAME_HEIGHT && Math.max(0, (GAME_HEIGHT - r - y) / dy) <= first) {
+				surface = BOTTOM_WALL;
+				first = Math.max(0, (GAME_HEIGHT - r - y) / dy);
+			}
+
+			ball.moveBy(dx * first, dy * first);
+			if (surface == NOTHING)
+				return;
+			remaining *= 1 - first;
+
+			// bounce off it, then carry on with whatever is left of the tick
+			if (surface == TOP_WALL || surface == BOTTOM_WALL) {
+				ball.reflectY();
+				events |= HIT_WALL;
+			} else {
+				Paddle paddle = surface == RIGHT_PADDLE ? rightPaddle : leftPaddle;
+				reflect(normalX, normalY);
+				hitPaddle(paddle, surface == RIGHT_PADDLE ? -1 : 1);
+			}
+		}
+	}
+
+	// bounces the ball off a surface facing (normalX, normalY)
+	private void reflect(double normalX, double normalY) {
+		double vx = ball.getDirectionX(), vy = ball.getDirectionY();
+		double dot = vx * normalX + vy * normalY;
+		if (dot >= 0)
+			return; // already moving away
+		if (normalY == 0)
+			ball.reflectX(); // straight off a side or the top or bottom of a paddle, exactly
+		else if (normalX == 0)
+			ball.reflectY();
+		else
+			ball.setDirection(vx - 2 * dot * normalX, vy - 2 * dot * normalY);
+	}
+
+	// what happens when the ball hits a paddle, after it has bounced: a paddle moving
+	// towards the middle (direction) hits it harder, and both paddles stop
+	private void hitPaddle(Paddle paddle, int direction) {
+		// elastic collision formulas to calculate resulting velocity of the ball
+		if (paddle.getHorizontalDirection() == direction)
+			ball.setSpeed(ball.getSpeed() / 2 + (paddle.getHorizontalSpeed() * 2 * paddle.getMass()
+					/ (paddle.getMass() + ball.getMass())
+					+ ball.getSpeed() * (paddle.getMass() - ball.getMass()) / (paddle.getMass() + ball.getMass()))
+					* 2);
+		events |= HIT_PADDLE;
+		rightPaddle.setDirection(0, 0);
+		leftPaddle.setDirection(0, 0);
+		rightPaddle.setHorizontalSpeed(0);
+		rightPaddle.setVerticalSpeed(0);
+		leftPaddle.setHorizontalSpeed(0);
+		leftPaddle.setVerticalSpeed(0);
+	}
+
+	// true if the ball overlaps a paddle (which can only happen if the paddle moved into it)
+	private boolean touching(Paddle paddle) {
+		double r = ball.getDiameter() / 2.0;
+		return Collision.overlaps(ball.getCurrentX() + r, ball.getCurrentY() + r, r, paddle.getLeft(), paddle.getTop(),
+				paddle.getRight(), paddle.getBottom());
+	}
+
+	// handles all collision detection and responds accordingly
+	// The ball can't pass through anything while it moves (see sweepBall()), so this deals with
+	// what's left: paddles being moved into the ball, the ball leaving the field, and keeping
+	// the paddles inside their zones
+	public void checkCollision() {
+		if (touching(rightPaddle)) {
+			ball.reflectX();
+			ball.setLocation(rightPaddle.x - ball.getDiameter(), ball.y);
+			hitPaddle(rightPaddle, -1);
+		}
+		if (touching(leftPaddle)) {
+			ball.reflectX();
+			ball.setLocation(leftPaddle.x + 2, ball.y);
+			hitPaddle(leftPaddle, 1);
+		}
+
+		// ball & border collisions
+		if (ball.y < 0) {
+			ball.y = 0;
+			ball.reflectY();
+			ball.setLocation((int) ball.getCurrentX(), 0);
+			events |= HIT_WALL;
+		}
+		if (ball.y > GAME_HEIGHT - ball.getDiameter()) {
+			ball.y = GAME_HEIGHT - ball.getDiameter();
+			ball.reflectY();
+			ball.setLocation((int) ball.getCurrentX(), GAME_HEIGHT - ball.getDiameter());
+			events |= HIT_WALL;
+		}
+		if (ball.x < -2) {
+			ball.x = 0;
+			ball.setLocation(0, (int) ball.getCurrentY());
+			ball.setSpeed(0);
+			rightScore.value++;
+			if (rightScore.value >= WINNING_SCORE) {
+				disable = true;
+				won = 1;
+				events |= WON;
+			} else {
+				disable = true;
+				newRound = true;
+				events |= SCORED;
+			}
+		}
+		if (ball.x + ball.getDiameter() > GAME_WIDTH + 2) {
+			ball.x = GAME_WIDTH - ball.getDiameter();
+			ball.setLocation(GAME_WIDTH - ball.getDiameter(), (int) ball.getCurrentY());
+			ball.setSpeed(0);
+			leftScore.value++;
+			if (leftScore.value >= WINNING_SCORE) {
+				disable = true;
+				won = -1;
+				events |= WON;
+			} else {
+				disable = true;
+				newRound = true;
+				events |= SCORED;
+			}
+		}
+
+		keepPaddlesInZones();
+	}
+
+	// stops the paddles leaving their zones or the screen
+	private void keepPaddlesInZones() {
+		// right paddle and border collisions
+		if (rightPaddle.getLeft() <= GAME_WIDTH - paddleBorder) {
+			rightPaddle.setHorizontalPosition(GAME_WIDTH - paddleBorder);
+		}
+		if (rightPaddle.getRight() >= GAME_WIDTH) {
+			rightPaddle.setHorizontalPosition(GAME_WIDTH - 2);
+		}
+		if (rightPaddle.getBottom() >= GAME_HEIGHT) {
+			rightPaddle.setVerticalPosition(GAME_HEIGHT - rightPaddle.getLength());
+		}
+		if (rightPaddle.getTop() <= 0) {
+			rightPaddle.setVerticalPosition(0);
+		}
+
+		// left paddle and border collisions
+		if (leftPaddle.getLeft() <= 0) {
+			leftPaddle.setHorizontalPosition(0);
+		}
+		if (leftPaddle.getRight() >= paddleBorder) {
+			leftPaddle.setHorizontalPosition(paddleBorder - 2);
+		}
+		if (leftPaddle.getBottom() >= GAME_HEIGHT) {
+			leftPaddle.setVerticalPosition(GAME_HEIGHT - leftPaddle.getLength());
+		}
+		if (leftPaddle.getTop() <= 0) {
+			leftPaddle.setVerticalPosition(0);
+		}
+	}
+
+	// returns angles in [0, 2pi] radian format
+	public double convertAngle(double angle) {
+		return (angle + 2 * Math.PI) % (2 * Math.PI);
+	}
+
+	// moves on to the next round: called when 'n' is pressed
+	public void nextRound() {
+		record(ReplayWriter.NEXT_ROUND, false, 0);
+		reset();
+		stuck = false;
+		disable = false;
+		newRound = false;
+	}
+
+	// clears everything left over from a finished game, apart from the scores
+	// (this is the end of the match, so the recording is finished here too)
+	public void endGame() {
+		record(ReplayWriter.END_GAME, false, 0);
+		stopRecording();
+		reset();
+		randomise = false;
+		won = 0;
+		disable = false;
+		stuck = false;
+	}
+
+	// turns randomised mode on or off, takes effect from the next round
+	public void toggleRandomise() {
+		record(ReplayWriter.TOGGLE_RANDOMISE, false, 0);
+		randomise = !randomise;
+	}
+
+	// turns chaos mode on or off straight away: hundreds of extra balls bouncing off
+	// the walls, the paddles and each other (they don't score, the real ball still does that)
+	public void toggleChaos() {
+		record(ReplayWriter.TOGGLE_CHAOS, false, 0);
+		if (chaos != null) {
+			chaos = null;
+			return;
+		}
+		chaos = new BallField(chaosBalls, GAME_WIDTH, GAME_HEIGHT, chaosMaxDiameter);
+		for (int i = 0; i < chaosBalls; i++) {
+			double diameter = chaosMinDiameter + random.nextDouble() * (chaosMaxDiameter - chaosMinDiameter);
+			double angle = random.nextDouble() * 2 * Math.PI;
+			double speed = chaosMinSpeed + random.nextDouble() * (chaosMaxSpeed - chaosMinSpeed);
+			chaos.add(paddleBorder + random.nextDouble() * (GAME_WIDTH - 2 * paddleBorder),
+					random.nextDouble() * GAME_HEIGHT, Math.cos(angle) * speed, Math.sin(angle) * speed, diameter);
+		}
+	}
+
+	// presses one of Paddle.UP, DOWN, LEFT or RIGHT for a player, ignored between rounds
+	public void press(boolean rightPlayer, int key) {
+		record(ReplayWriter.PRESS, rightPlayer, key);
+		if (!disable)
+			(rightPlayer ? rightPaddle : leftPaddle).press(key);
+	}
+
+	// releases one of Paddle.UP, DOWN, LEFT or RIGHT for a player
+	public void release(boolean rightPlayer, int key) {
+		record(ReplayWriter.RELEASE, rightPlayer, key);
+		(rightPlayer ? rightPaddle : leftPaddle).release(key);
+	}
+
+	// starts recording every input and tick of this match into recorder
+	public void record(ReplayWriter recorder) {
+		this.recorder = recorder;
+	}
+
+	// finishes the recording, if there is one
+	public void stopRecording() {
+		if (recorder != null)
+			recorder.close();
+		recorder = null;
+	}
+
+	// passes an input on to the recorder, if there is one
+	private void record(int input, boolean rightPlayer, int key) {
+		if (recorder != null)
+			recorder.input(input, rightPlayer, key);
+	}
+
+	// Returns a hash of everything that affects how the game plays out from here,
+	// so two runs can be checked for being exactly the same (down to the last bit of every double)
+	public long hash() {
+		long hash = 0xcbf29ce484222325L;
+		hash = mix(hash, Double.doubleToLongBits(ball.getCurrentX()));
+		hash = mix(hash, Double.doubleToLongBits(ball.getCurrentY()));
+		hash = mix(hash, Double.doubleToLongBits(ball.getDirectionX()));
+		hash = mix(hash, Double.doubleToLongBits(ball.getDirectionY()));
+		hash = mix(hash, Double.doubleToLongBits(ball.getSpeed()));
+		hash = mix(hash, ball.getDiameter());
+		hash = mix(hash, leftPaddle);
+		hash = mix(hash, rightPaddle);
+		hash = mix(hash, leftScore.value);
+		hash = mix(hash, rightScore.value);
+		hash = mix(hash, paddleBorder);
+		hash = mix(hash, won);
+		if (chaos != null)
+			for (int i = 0; i < chaos.getCount(); i++) {
+				hash = mix(hash, Double.doubleToLongBits(chaos.getX(i)));
+				hash = mix(hash, Double.doubleToLongBits(chaos.getY(i)));
+			}
+		return mix(hash, (randomise ? 1 : 0) | (disable ? 2 : 0) | (stuck ? 4 : 0) | (newRound ? 8 : 0));
+	}
+
+	// adds everything about a paddle to the hash
+	private static long mix(long hash, Paddle paddle) {
+		hash = mix(hash, Double.doubleToLongBits(paddle.getLeft()));
+		hash = mix(hash, Double.doubleToLongBits(paddle.getTop()));
+		hash = mix(hash, Double.doubleToLongBits(paddle.getHorizontalSpeed()));
+		hash = mix(hash, Double.doubleToLongBits(paddle.getVerticalSpeed()));
+		hash = mix(hash, paddle.getHorizontalDirection() * 3 + paddle.getVerticalDirection());
+		hash = mix(hash, paddle.getLength());
+		return mix(hash, paddle.getMass());
+	}
+
+	// Writes everything that affects how the game plays out from here (the same things hash() covers,
+	// and the random numbers still to come) so that read() can put this world back exactly as it was
+	public void write(ByteBuffer out) {
+		ball.write(out);
+		leftPaddle.write(out);
+		rightPaddle.write(out);
+		out.putInt(leftScore.value);
+		out.putInt(rightScore.value);
+		out.putInt(paddleBorder);
+		out.putInt(won);
+		out.putInt(events);
+		out.put((byte) ((randomise ? 1 : 0) | (disable ? 2 : 0) | (stuck ? 4 : 0) | (newRound ? 8 : 0)));
+		out.putDouble(friction);
+		out.putLong(random.getState());
+		if (chaos == null)
+			out.putInt(-1);
+		else
+			chaos.write(out);
+	}
+
+	// Puts this world back to a state written by write()
+	public void read(ByteBuffer in) {
+		ball.read(in);
+		leftPaddle.read(in);
+		rightPaddle.read(in);
+		leftScore.value = in.getInt();
+		rightScore.value = in.getInt();
+		paddleBorder = in.getInt();
+		won = in.getInt();
+		events = in.getInt();
+		int flags = in.get();
+		randomise = (flags & 1) != 0;
+		disable = (flags & 2) != 0;
+		stuck = (flags & 4) != 0;
+		newRound = (flags & 8) != 0;
+		friction = in.getDouble();
+		random.setState(in.getLong());
+		if (in.getInt(in.position()) == -1) {
+			in.getInt();
+			chaos = null;
+		} else {
+			if (chaos == null)
+				chaos = new BallField(chaosBalls, GAME_WIDTH, GAME_HEIGHT, chaosMaxDiameter);
+			chaos.read(in);
+		}
+	}
+
+	// one step of the FNV-1a hash, a long at a time
+	private static long mix(long hash, long value) {
+		return (hash ^ value) * 0x100000001b3L;
+	}
+
+	// true when nothing can change until the players press something
+	public boolean isWaiting() {
+		return won != 0 || stuck || newRound;
+	}
+
+	// Getter function, returns the bits of HIT_WALL, HIT_PADDLE, SCORED and WON that happened last tick
+	public int getEvents() {
+		return events;
+	}
+
+	// Getter function, returns a number that goes up whenever the ball and paddles are put back for a new round
+	// (they are the same objects as before, just somewhere else)
+	public int getRound() {
+		return round;
+	}
+
+	// Getter function, returns the ball
+	public Ball getBall() {
+		return ball;
+	}
+
+	// Getter function, returns the right or left paddle
+	public Paddle getPaddle(boolean rightPlayer) {
+		return rightPlayer ? rightPaddle : leftPaddle;
+	}
+
+	// Getter function, returns the right or left score
+	public Score getScore(boolean rightPlayer) {
+		return rightPlayer ? rightScore : leftScore;
+	}
+
+	// Getter function, returns how far the paddle zones reach in from each side
+	public int getPaddleBorder() {
+		return paddleBorder;
+	}
+
+	// Getter function, returns 1 if the right player won, -1 if the left player won, 0 otherwise
+	public int getWon() {
+		return won;
+	}
+
+	// Getter function, returns whether the ball got stuck in the middle
+	public boolean isStuck() {
+		return stuck;
+	}
+
+	// Getter function, returns whether someone scored and the next round hasn't started
+	public boolean isNewRound() {
+		return newRound;
+	}
+
+	// Setter function, sets how much speed the ball loses every tick
+	public void setFriction(double friction) {
+		this.friction = friction;
+	}
+
+	// Getter function, returns how much speed the ball loses every tick
+	public double getFriction() {
+		return friction;
+	}
+
+	// Getter function, returns the seed this game was started from
+	public long getSeed() {
+		return seed;
+	}
+
+	// Getter function, returns the extra balls of chaos mode, or null if it's off
+	public BallField getChaos() {
+		return chaos;
+	}
+
+	// Getter function, returns whether randomised mode is on
+	public boolean isRandomised() {
+		return randomise;
+	}
+}
@@ -0,0 +1,114 @@
+import java.nio.ByteBuffer;
+
+/* WorldCodec class turns the state of a World into bytes and back, and shrinks the difference
+ * between two of those states for sending over the network
+ * A state is the two players' held keys followed by World.write(). Most of it hardly changes from
+ * one snapshot to the next (scores, sizes, the paddle that isn't moving...), so a delta is the
+ * XOR of the new state with an older one both sides already have, stored as runs of unchanged
+ * (zero) bytes and runs of changed ones. Without an older state it is the same thing against zeros.
+ */
+
+public class WorldCodec {
+
+	// largest state there can be: a fixed part well under 1 KB, plus chaos mode's balls
+	public static final int MAX_STATE = 1024 + 500 * 5 * 8;
+
+	private WorldCodec() {
+	}
+
+	// Writes the state into the buffer (from position 0, flipped ready to read)
+	public static void encode(World world, int leftKeys, int rightKeys, ByteBuffer state) {
+		state.clear();
+		state.put((byte) leftKeys);
+		state.put((byte) rightKeys);
+		world.write(state);
+		state.flip();
+	}
+
+	// Puts the world back to the state in the buffer, returns the held keys (left in the low byte, right above)
+	public static int decode(World world, ByteBuffer state) {
+		ByteBuffer in = state.duplicate();
+		in.rewind();
+		int leftKeys = in.get() & 0xff, rightKeys = in.get() & 0xff;
+		world.read(in);
+		return leftKeys | rightKeys << 8;
+	}
+
+	// Writes the difference between state and base (null for no base) into out
+	public static void delta(ByteBuffer base, ByteBuffer state, ByteBuffer out) {
+		int length = state.limit();
+		putVarint(out, length);
+		int i = 0;
+		while (i < length) {
+			int unchanged = i;
+			while (unchanged < length && xor(base, state, unchanged) == 0)
+				unchanged++;
+			int changed = unchanged;
+			// a couple of unchanged bytes in the middle of changed ones are cheaper kept than split
+			while (changed < length && (xor(base, state, changed) != 0 || (changed + 2 < length
+					&& (xor(base, state, changed + 1) != 0 || xor(base, state, changed + 2) != 0))))
+				changed++;
+			putVarint(out, unchanged - i);
+			putVarint(out, changed - unchanged);
+			for (int j = unchanged; j < changed; j++)
+				out.put(xor(base, state, j));
+			i = changed;
+		}
+	}
+
+	// Reads a difference written by delta() and applies it to base (null for no base), giving the state
+	// (from position 0, flipped ready to read)
+	public static void undelta(ByteBuffer base, ByteBuffer in, ByteBuffer state) {
+		int length = getVarint(in);
+		state.clear();
+		int i = 0;
+		while (i < length) {
+			int unchanged = getVarint(in), changed = getVarint(in);
+			for (int j = 0; j < unchanged; j++, i++)
+				state.put(i, byteAt(base, i));
+			for (int j = 0; j < changed; j++, i++)
+				state.put(i, (byte) (byteAt(base, i) ^ in.get()));
+		}
+		state.limit(length);
+	}
+
+	// Returns true if two states are exactly the same
+	public static boolean same(ByteBuffer a, ByteBuffer b) {
+		if (a.limit() != b.limit())
+			return false;
+		for (int i = 0; i < a.limit(); i++)
+			if (a.get(i) != b.get(i))
+				return false;
+		return true;
+	}
+
+	// byte i of the state XORed with byte i of the base (a missing base, or past its end, counts as zero)
+	private static byte xor(ByteBuffer base, ByteBuffer state, int i) {
+		return (byte) (state.get(i) ^ byteAt(base, i));
+	}
+
+	// byte i of the base, or zero
+	private static byte byteAt(ByteBuffer base, int i) {
+		return base == null || i >= base.limit() ? 0 : base.get(i);
+	}
+
+	// writes a non-negative int in as few bytes as it needs, 7 bits at a time
+	static void putVarint(ByteBuffer out, int value) {
+		while (value >= 0x80) {
+			out.put((byte) (value | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	// reads an int written by putVarint()
+	static int getVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7f) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+@echo off
+rem Starts the game quickly: from a runtime image with only the modules the game needs (jlink),
+rem with the game's classes already parsed and verified in a class data sharing archive (AppCDS).
+rem The first run builds the jar and the image, and records the archive when the game is closed;
+rem every run after that maps those classes straight in. Delete game\target to start over.
+cd /d "%~dp0"
+if not exist game\target\pong-game-1.0-SNAPSHOT.jar call mvn -B -q -pl game package || exit /b 1
+if not exist game\target\runtime (
+	jlink --add-modules java.desktop,java.management,jdk.jfr --strip-debug --no-header-files --no-man-pages --output game\target\runtime || exit /b 1
+	game\target\runtime\bin\java -Xshare:dump > nul
+)
+cd Assets
+if exist ..\game\target\pong.jsa (
+	..\game\target\runtime\bin\java -XX:SharedArchiveFile=..\game\target\pong.jsa -cp ..\game\target\pong-game-1.0-SNAPSHOT.jar Main %*
+) else (
+	..\game\target\runtime\bin\java -XX:ArchiveClassesAtExit=..\game\target\pong.jsa -cp ..\game\target\pong-game-1.0-SNAPSHOT.jar Main %*
+)
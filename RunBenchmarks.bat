@@ -0,0 +1,2 @@
+call mvn -B -q package
+java -jar benchmarks\target\benchmarks.jar %*
@@ -0,0 +1,231 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/* BenchmarkFixtures class sets up the game objects for the JMH benchmarks
+ * The game lives in the default package, which JMH benchmarks can't (and Java code in a
+ * named package can't import from), so the benchmarks in pong.bench load this class by name
+ * and only ever see the Runnables it hands back.
+ * Each Runnable does exactly one unit of the work being measured.
+ */
+
+public class BenchmarkFixtures {
+
+	static {
+		System.setProperty("java.awt.headless", "true");
+	}
+
+	// one Ball.move(), bouncing the ball back to the middle before it wanders off
+	public static Runnable ballMove() {
+		final Ball ball = new Ball(World.GAME_WIDTH / 2, World.GAME_HEIGHT / 2);
+		ball.setTrajectory(0.5, 5);
+		return new Runnable() {
+			public void run() {
+				ball.move();
+				if (ball.x > World.GAME_WIDTH)
+					ball.setLocation(0, World.GAME_HEIGHT / 2);
+			}
+		};
+	}
+
+	// one World.checkCollision() where the ball has just hit the right paddle
+	public static Runnable paddleCollision() {
+		final World world = new World();
+		final Ball ball = world.getBall();
+		final Paddle paddle = world.getPaddle(true);
+		return new Runnable() {
+			public void run() {
+				ball.setLocation(paddle.x - ball.getDiameter() + 1, paddle.y);
+				ball.setTrajectory(0, 5);
+				world.checkCollision();
+			}
+		};
+	}
+
+	// one World.checkCollision() where the ball has just gone through the top wall
+	public static Runnable wallCollision() {
+		final World world = new World();
+		final Ball ball = world.getBall();
+		return new Runnable() {
+			public void run() {
+				ball.setLocation(World.GAME_WIDTH / 2, -1);
+				ball.setTrajectory(Math.PI / 4, 5);
+				world.checkCollision();
+			}
+		};
+	}
+
+	// one World.checkCollision() where the ball has just gone past the left paddle
+	public static Runnable scoreCollision() {
+		final World world = new World();
+		final Ball ball = world.getBall();
+		final Score score = world.getScore(true);
+		return new Runnable() {
+			public void run() {
+				ball.setLocation(-3, World.GAME_HEIGHT / 2);
+				ball.setTrajectory(Math.PI, 5);
+				score.value = 0;
+				world.checkCollision();
+			}
+		};
+	}
+
+	// one full game tick (move, collisions, friction), starting the next round whenever
+	// someone would have had to press n
+	public static Runnable tick() {
+		final World world = new World();
+		return new Runnable() {
+			public void run() {
+				if (world.isWaiting())
+					world.nextRound();
+				world.tick();
+			}
+		};
+	}
+
+	// one BallField.tick() with the given number of balls, in a field grown along with the number
+	// of balls so they stay as crowded as chaos mode's 500 in the normal field
+	public static Runnable ballField(int balls) {
+		double side = World.GAME_WIDTH * Math.sqrt(balls / 500.0);
+		final BallField field = new BallField(balls, side, side, 8);
+		final Paddle left = new Paddle(false), right = new Paddle(true);
+		Random random = new Random(1);
+		for (int i = 0; i < balls; i++) {
+			double angle = random.nextDouble() * 2 * Math.PI, speed = 1 + random.nextDouble() * 2;
+			field.add(random.nextDouble() * side, random.nextDouble() * side, Math.cos(angle) * speed,
+					Math.sin(angle) * speed, 4 + random.nextDouble() * 4);
+		}
+		return new Runnable() {
+			public void run() {
+				field.tick(left, right);
+			}
+		};
+	}
+
+	// one whole frame drawn into an off screen BufferedImage, ticking the world (and taking
+	// a RenderState of it, like the game thread does) in between so the picture actually changes
+	public static Runnable paint() {
+		final World world = new World();
+		final RenderState state = new RenderState();
+		final Renderer renderer = new Renderer();
+		final BufferedImage image = new BufferedImage(World.GAME_WIDTH, World.GAME_HEIGHT,
+				BufferedImage.TYPE_INT_RGB);
+		final Graphics graphics = image.createGraphics();
+		return new Runnable() {
+			public void run() {
+				if (world.isWaiting())
+					world.nextRound();
+				world.tick();
+				state.copyFrom(world);
+				renderer.render(graphics, state);
+			}
+		};
+	}
+
+	// the same as paint(), but only drawing the parts of the frame that changed (see DirtyRegions),
+	// into an image that keeps the frame before
+	public static Runnable paintDirty() {
+		final World world = new World();
+		final RenderState state = new RenderState();
+		final Renderer renderer = new Renderer();
+		final DirtyRegions dirty = new DirtyRegions(World.GAME_WIDTH, World.GAME_HEIGHT);
+		final BufferedImage image = new BufferedImage(World.GAME_WIDTH, World.GAME_HEIGHT,
+				BufferedImage.TYPE_INT_RGB);
+		final Graphics graphics = image.createGraphics();
+		return new Runnable() {
+			public void run() {
+				if (world.isWaiting())
+					world.nextRound();
+				world.tick();
+				state.copyFrom(world);
+				renderer.damage(state, dirty);
+				for (int i = 0; i < dirty.getCount(); i++) {
+					graphics.setClip(dirty.get(i));
+					renderer.render(graphics, state);
+				}
+				dirty.clear();
+			}
+		};
+	}
+
+	// a world part of the way through a match, for snapshots of it
+	private static World midMatch() {
+		World world = new World(1);
+		world.nextRound();
+		for (int i = 0; i < 100; i++)
+			world.tick();
+		return world;
+	}
+
+	// one Snapshot.encode() of a match in progress, into a buffer on the heap
+	public static Runnable snapshotEncode() {
+		final World world = midMatch();
+		final ByteBuffer buffer = ByteBuffer.allocate(Snapshot.MAX_SIZE);
+		final CRC32 crc = new CRC32();
+		return new Runnable() {
+			public void run() {
+				buffer.clear();
+				Snapshot.encode(world, 0, buffer, crc);
+			}
+		};
+	}
+
+	// one Snapshot.isValid() and decode() of a match in progress, back into a world
+	public static Runnable snapshotDecode() {
+		final World world = midMatch();
+		final ByteBuffer buffer = ByteBuffer.allocate(Snapshot.MAX_SIZE);
+		final CRC32 crc = new CRC32();
+		Snapshot.encode(world, 0, buffer, crc);
+		return new Runnable() {
+			public void run() {
+				if (!Snapshot.isValid(buffer, 0, crc))
+					throw new IllegalStateException("Snapshot didn't survive");
+				Snapshot.decode(buffer, 0, world);
+			}
+		};
+	}
+
+	// one SnapshotRing.write() of a match in progress, into a memory mapped file like the game's
+	public static Runnable snapshotRingWrite() {
+		final World world = midMatch();
+		final SnapshotRing ring;
+		try {
+			File file = File.createTempFile("bench", ".snapshot");
+			file.deleteOnExit();
+			ring = new SnapshotRing(file.getPath(), 4);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new Runnable() {
+			public void run() {
+				ring.write(world);
+			}
+		};
+	}
+
+	// one PongEnv.step() of every game, with the actions picked at random up front (so only the games
+	// themselves are measured)
+	public static Runnable pongEnv(int games, int threads) {
+		final PongEnv env = new PongEnv(games, threads);
+		env.reset(1);
+		final int[][] actions = new int[64][games * 2];
+		Random random = new Random(1);
+		for (int[] step : actions)
+			for (int i = 0; i < step.length; i++)
+				step[i] = random.nextInt(16);
+		final float[] observations = new float[games * 2 * PongEnv.OBSERVATION_SIZE], rewards = new float[games * 2];
+		final boolean[] done = new boolean[games];
+		return new Runnable() {
+			int step;
+
+			public void run() {
+				env.step(actions[step++ & 63], observations, rewards, done);
+			}
+		};
+	}
+}
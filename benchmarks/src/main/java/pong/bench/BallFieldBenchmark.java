@@ -0,0 +1,44 @@
+package pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* BallFieldBenchmark measures one chaos mode tick (BallField.tick()) for more and more balls
+ * The balls are kept equally crowded, so with the grid a tick should grow in step with the
+ * number of balls rather than with its square. A 60 Hz tick has about 16 ms to spare.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BallFieldBenchmark {
+
+	@Param({ "100", "1000", "10000", "50000" })
+	public int balls;
+
+	private Runnable tick;
+
+	@Setup
+	public void setup() {
+		tick = Fixtures.get("ballField", balls);
+	}
+
+	@Benchmark
+	public void tick() {
+		tick.run();
+	}
+}
@@ -0,0 +1,28 @@
+package pong.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/* BenchmarkMain runs the benchmarks with the GC profiler switched on, so every result comes with
+ * its allocation rate (gc.alloc.rate.norm is bytes per call), and saves them to jmh-result.json
+ * Any normal JMH command line options still work, e.g. a regex to pick benchmarks, or -f 3
+ */
+
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,43 @@
+package pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* CollisionBenchmark measures World.checkCollision() when the ball has just hit a paddle,
+ * hit a wall, or gone past a paddle for a point. Each call also puts the ball back where it was.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+
+	@Param({ "paddle", "wall", "score" })
+	public String collision;
+
+	private Runnable checkCollision;
+
+	@Setup
+	public void setup() {
+		checkCollision = Fixtures.get(collision + "Collision");
+	}
+
+	@Benchmark
+	public void checkCollision() {
+		checkCollision.run();
+	}
+}
@@ -0,0 +1,26 @@
+package pong.bench;
+
+/* Fixtures class fetches the Runnables from BenchmarkFixtures
+ * That class is in the default package along with the game, so it has to be looked up by name
+ */
+
+final class Fixtures {
+
+	private Fixtures() {
+	}
+
+	// calls the static factory method with the given name and int arguments (any number of them) on BenchmarkFixtures
+	static Runnable get(String name, int... arguments) {
+		Class<?>[] types = new Class<?>[arguments.length];
+		Object[] values = new Object[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			types[i] = int.class;
+			values[i] = arguments[i];
+		}
+		try {
+			return (Runnable) Class.forName("BenchmarkFixtures").getMethod(name, types).invoke(null, values);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("No benchmark fixture called " + name, e);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* GameLoopBenchmark measures the cost of the pieces of one pass of the game loop:
+ * moving the ball, a whole tick of the World, and drawing a frame off screen (all of it, or just what changed)
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameLoopBenchmark {
+
+	private Runnable ballMove, tick, paint, paintDirty;
+
+	@Setup
+	public void setup() {
+		ballMove = Fixtures.get("ballMove");
+		tick = Fixtures.get("tick");
+		paint = Fixtures.get("paint");
+		paintDirty = Fixtures.get("paintDirty");
+	}
+
+	// Ball.move()
+	@Benchmark
+	public void ballMove() {
+		ballMove.run();
+	}
+
+	// World.move() + World.checkCollision() + friction
+	@Benchmark
+	public void tick() {
+		tick.run();
+	}
+
+	// one tick plus a full frame rendered into a BufferedImage
+	@Benchmark
+	public void tickAndPaint() {
+		paint.run();
+	}
+
+	// one tick plus only the parts of the frame that changed drawn again
+	@Benchmark
+	public void tickAndPaintDirty() {
+		paintDirty.run();
+	}
+}
@@ -0,0 +1,47 @@
+package pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* PongEnvBenchmark measures one batch step of PongEnv: a tick of every game, with observations and rewards
+ * Steps per second is games / the time per op. gc.alloc.rate.norm should be about zero, however many
+ * games there are and however many threads share them.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PongEnvBenchmark {
+
+	@Param({ "1", "64", "1024" })
+	public int games;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	private Runnable step;
+
+	@Setup
+	public void setup() {
+		step = Fixtures.get("pongEnv", games, threads);
+	}
+
+	@Benchmark
+	public void step() {
+		step.run();
+	}
+}
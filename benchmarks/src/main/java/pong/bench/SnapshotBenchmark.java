@@ -0,0 +1,55 @@
+package pong.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* SnapshotBenchmark measures saving and restoring a whole match (see Snapshot): encoding one,
+ * checking and decoding one, and writing one into the memory mapped ring file the game uses.
+ * A snapshot is written on the game thread, so it needs to be a tiny slice of a 16 ms tick.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+	private Runnable encode, decode, ringWrite;
+
+	@Setup
+	public void setup() {
+		encode = Fixtures.get("snapshotEncode");
+		decode = Fixtures.get("snapshotDecode");
+		ringWrite = Fixtures.get("snapshotRingWrite");
+	}
+
+	// Snapshot.encode() into a heap buffer
+	@Benchmark
+	public void encode() {
+		encode.run();
+	}
+
+	// Snapshot.isValid() + Snapshot.decode() back into a World
+	@Benchmark
+	public void decode() {
+		decode.run();
+	}
+
+	// SnapshotRing.write(), into the mapped file
+	@Benchmark
+	public void ringWrite() {
+		ringWrite.run();
+	}
+}